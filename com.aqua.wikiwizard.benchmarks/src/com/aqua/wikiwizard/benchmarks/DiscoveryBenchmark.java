@@ -0,0 +1,64 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.aqua.wikiwizard.HierarchyDiscovery;
+import com.aqua.wikiwizard.ProjectWalkDiscovery;
+import com.aqua.wikiwizard.SearchEngineDiscovery;
+import com.aqua.wikiwizard.TypeEntry;
+
+/**
+ * Time to find all the system objects of the generated workspace, by discovery mode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(0)
+public class DiscoveryBenchmark {
+	
+	// Threads of the project walk
+	@Param("4")
+	public int threads;
+	
+	@Benchmark
+	public List<TypeEntry> searchEngine(WorkspaceState workspace) throws CoreException {
+		return WorkspaceState.discover(new SearchEngineDiscovery());
+	}
+	
+	@Benchmark
+	public List<TypeEntry> hierarchy(WorkspaceState workspace) throws CoreException {
+		return WorkspaceState.discover(new HierarchyDiscovery(WorkspaceState.BASE_TYPE));
+	}
+	
+	@Benchmark
+	public List<TypeEntry> projectWalk(WorkspaceState workspace) throws CoreException {
+		return WorkspaceState.discover(new ProjectWalkDiscovery(threads));
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.aqua.wikiwizard.Activator;
+import com.aqua.wikiwizard.ExportMetrics;
+import com.aqua.wikiwizard.FieldInitializerExtractor;
+import com.aqua.wikiwizard.JavadocSanitizer;
+import com.aqua.wikiwizard.MemberClassifier;
+import com.aqua.wikiwizard.TypeEntry;
+import com.aqua.wikiwizard.WikiExportModel;
+import com.aqua.wikiwizard.WikiFormater;
+
+/**
+ * Time of the steps reading the system objects of the generated workspace.
+ * Each operation covers all the types (or fields) of the workspace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(0)
+public class ExtractionBenchmark {
+	
+	private WikiExportModel exportModel;
+	private String[] javadocs;
+	
+	// Not reported, only needed by the measured code
+	private ExportMetrics metrics = new ExportMetrics();
+	
+	/**
+	 * The types in a new random order before every sort
+	 */
+	@State(Scope.Thread)
+	public static class Shuffled {
+		List<TypeEntry> entries;
+		
+		@Setup(Level.Invocation)
+		public void shuffle(WorkspaceState workspace) {
+			entries = new ArrayList<TypeEntry>(workspace.entries);
+			Collections.shuffle(entries, new Random(0));
+		}
+	}
+	
+	/**
+	 * Empty plugin caches before every operation
+	 */
+	@State(Scope.Thread)
+	public static class ColdCaches {
+		@Setup(Level.Invocation)
+		public void clear() {
+			WorkspaceState.clearCaches();
+		}
+	}
+	
+	@Setup
+	public void setUp(WorkspaceState workspace) {
+		exportModel = new WikiExportModel(new WikiFormater());
+		exportModel.setMemberExecutor(Activator.getPlugin().getMemberExecutor());
+		
+		javadocs = new String[workspace.allFields.size()];
+		for (int i = 0; i < javadocs.length; i++) {
+			javadocs[i] = "<p>Field <a href=\"#f" + i + "\">number " + i + "</a> of the object,\r\n"
+					+ "   with a <code>default</code> value.   \r\n\r\n  See the <a href=\"#x\">base</a>.\r\n\r\n";
+		}
+	}
+	
+	@Benchmark
+	public List<TypeEntry> sorting(Shuffled shuffled) {
+		TypeEntry.sortByName(shuffled.entries);
+		return shuffled.entries;
+	}
+	
+	@Benchmark
+	public void memberClassification(WorkspaceState workspace, Blackhole blackhole) throws Exception {
+		for (IType type: workspace.allTypes) {
+			blackhole.consume(MemberClassifier.classify(type.getChildren()));
+		}
+	}
+	
+	@Benchmark
+	public void javadocCleaning(Blackhole blackhole) {
+		for (String javadoc: javadocs) {
+			blackhole.consume(JavadocSanitizer.sanitize(javadoc));
+		}
+	}
+	
+	@Benchmark
+	public void defaultValuesCold(WorkspaceState workspace, Blackhole blackhole) throws Exception {
+		// A new extractor parses every unit again
+		FieldInitializerExtractor extractor = new FieldInitializerExtractor();
+		for (IField field: workspace.allFields) {
+			blackhole.consume(extractor.getInitializer(field, metrics));
+		}
+	}
+	
+	@Benchmark
+	public void extractionCold(WorkspaceState workspace, ColdCaches cold, Blackhole blackhole) throws Exception {
+		for (IType type: workspace.allTypes) {
+			blackhole.consume(exportModel.extractDocument(type, metrics));
+		}
+	}
+	
+	@Benchmark
+	public void extractionWarm(WorkspaceState workspace, Blackhole blackhole) throws Exception {
+		for (IType type: workspace.allTypes) {
+			blackhole.consume(exportModel.extractDocument(type, metrics));
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.core.IType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.aqua.wikiwizard.AppendableFormater;
+import com.aqua.wikiwizard.ExportFormat;
+import com.aqua.wikiwizard.ExportMetrics;
+import com.aqua.wikiwizard.SystemObjectDocument;
+import com.aqua.wikiwizard.WikiExportModel;
+import com.aqua.wikiwizard.WikiFormater;
+
+/**
+ * Time to render the pages of all the generated types, by format.
+ * The documents are read once, only the rendering is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(0)
+public class FormattingBenchmark {
+	
+	@Param({"WIKI", "MARKDOWN", "CONFLUENCE", "HTML"})
+	public ExportFormat format;
+	
+	private List<SystemObjectDocument> documents;
+	private AppendableFormater formater;
+	
+	// Not reported, only needed by the measured code
+	private ExportMetrics metrics = new ExportMetrics();
+	
+	@Setup
+	public void setUp(WorkspaceState workspace) throws Exception {
+		WikiExportModel exportModel = new WikiExportModel(new WikiFormater());
+		documents = new ArrayList<SystemObjectDocument>();
+		for (IType type: workspace.allTypes) {
+			documents.add(exportModel.extractDocument(type, metrics));
+		}
+		formater = format.createFormater();
+	}
+	
+	@Benchmark
+	public void pages(Blackhole blackhole) throws Exception {
+		for (SystemObjectDocument document: documents) {
+			StringBuilder buf = new StringBuilder();
+			document.write(formater, buf, metrics);
+			blackhole.consume(buf);
+		}
+	}
+}
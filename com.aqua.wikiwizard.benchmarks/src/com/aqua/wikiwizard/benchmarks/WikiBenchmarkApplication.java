@@ -0,0 +1,122 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard.benchmarks;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the export pipeline on a generated workspace,
+ * without a workbench. Runs as the <code>com.aqua.wikiwizard.benchmark</code> application:
+ * <pre>
+ * eclipse -nosplash -application com.aqua.wikiwizard.benchmark -data &lt;workspace&gt;
+ *     [-projects &lt;n&gt;] [-packages &lt;n&gt;] [-types &lt;n&gt;] [-members &lt;n&gt;]
+ *     [-warmup &lt;n&gt;] [-iterations &lt;n&gt;] [-threads &lt;n&gt;] [-include &lt;regexp&gt;]
+ * </pre>
+ * The benchmarks read the java model of the running workspace, so they are
+ * not forked and run in this VM. The JMH jars are not shipped with the
+ * sources, <code>lib/</code> should hold <code>jmh-core.jar</code> with its
+ * <code>jopt-simple.jar</code> and <code>commons-math3.jar</code>, and the
+ * build needs <code>jmh-generator-annprocess.jar</code> as annotation processor.
+ */
+public class WikiBenchmarkApplication implements IApplication {
+	
+	private String projects = "2";
+	private String packages = "5";
+	private String types = "20";
+	private String members = "20";
+	private int warmup = 2;
+	private int iterations = 5;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private String include = WikiBenchmarkApplication.class.getPackage().getName() + ".*";
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		if (!parseArguments(args)) {
+			System.err.println("Usage: [-projects <n>] [-packages <n>] [-types <n>] [-members <n>]"
+					+ " [-warmup <n>] [-iterations <n>] [-threads <n>] [-include <regexp>]");
+			return Integer.valueOf(1);
+		}
+		
+		ChainedOptionsBuilder options = new OptionsBuilder()
+			.include(include)
+			.forks(0)
+			.warmupIterations(warmup)
+			.measurementIterations(iterations)
+			.param("projects", projects)
+			.param("packages", packages)
+			.param("types", types)
+			.param("members", members)
+			.param("threads", String.valueOf(threads));
+		
+		// JMH loads the benchmarks and their generated classes through the context class loader
+		Thread thread = Thread.currentThread();
+		ClassLoader contextLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(WikiBenchmarkApplication.class.getClassLoader());
+		try {
+			new Runner(options.build()).run();
+		} catch (RunnerException e) {
+			System.err.println(e.getMessage());
+			return Integer.valueOf(1);
+		} finally {
+			thread.setContextClassLoader(contextLoader);
+		}
+		return EXIT_OK;
+	}
+
+	@Override
+	public void stop() {
+	}
+	
+	private boolean parseArguments(String[] args) {
+		if (args == null) {
+			return true;
+		}
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if ("-projects".equals(arg)) {
+					projects = String.valueOf(Integer.parseInt(args[++i]));
+				} else if ("-packages".equals(arg)) {
+					packages = String.valueOf(Integer.parseInt(args[++i]));
+				} else if ("-types".equals(arg)) {
+					types = String.valueOf(Integer.parseInt(args[++i]));
+				} else if ("-members".equals(arg)) {
+					members = String.valueOf(Integer.parseInt(args[++i]));
+				} else if ("-warmup".equals(arg)) {
+					warmup = Integer.parseInt(args[++i]);
+				} else if ("-iterations".equals(arg)) {
+					iterations = Math.max(1, Integer.parseInt(args[++i]));
+				} else if ("-threads".equals(arg)) {
+					threads = Integer.parseInt(args[++i]);
+				} else if ("-include".equals(arg)) {
+					include = args[++i];
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return false;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return true;
+	}
+}
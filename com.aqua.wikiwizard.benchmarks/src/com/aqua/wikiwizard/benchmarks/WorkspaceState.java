@@ -0,0 +1,250 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.QualifiedName;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.aqua.wikiwizard.Activator;
+import com.aqua.wikiwizard.SearchEngineDiscovery;
+import com.aqua.wikiwizard.TypeDiscovery;
+import com.aqua.wikiwizard.TypeDiscoveryListener;
+import com.aqua.wikiwizard.TypeEntry;
+
+/**
+ * The generated projects the benchmarks run on, with the types found in them.
+ * The projects are generated once (projects x packages x types x members)
+ * and reused by the next trials and runs with the same sizes, they are
+ * generated again when the sizes change.
+ */
+@State(Scope.Benchmark)
+public class WorkspaceState {
+	
+	public static final String BASE_TYPE = "wikibench.base.BenchSystemObject";
+	
+	private static final String PROJECT_PREFIX = "wikibench";
+	private static final String JRE_CONTAINER = "org.eclipse.jdt.launching.JRE_CONTAINER";
+	
+	// The sizes a project was generated with
+	private static final QualifiedName SIZES = new QualifiedName(Activator.PLUGIN_ID, "benchmarkSizes");
+	
+	@Param("2")
+	public int projects;
+	
+	@Param("5")
+	public int packages;
+	
+	@Param("20")
+	public int types;
+	
+	@Param("20")
+	public int members;
+	
+	List<TypeEntry> entries;
+	List<IType> allTypes;
+	List<IField> allFields;
+	
+	@Setup
+	public void setUp() throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		generateWorkspace(workspace);
+		workspace.save(true, null);
+		
+		entries = discover(new SearchEngineDiscovery());
+		allTypes = new ArrayList<IType>();
+		allFields = new ArrayList<IField>();
+		for (TypeEntry entry: entries) {
+			IType type = entry.getType();
+			allTypes.add(type);
+			Collections.addAll(allFields, type.getFields());
+		}
+	}
+	
+	/**
+	 * Runs the discovery to the end
+	 * @param discovery
+	 * 			The discovery
+	 * @return
+	 * 			All the types found
+	 * @throws CoreException
+	 */
+	static List<TypeEntry> discover(TypeDiscovery discovery) throws CoreException {
+		final ArrayList<TypeEntry> entries = new ArrayList<TypeEntry>();
+		discovery.discover(new TypeDiscoveryListener() {
+			public void typesFound(List<TypeEntry> types) {
+				entries.addAll(types);
+			}
+			
+			public void discoveryDone(IStatus status) {
+			}
+		}, new NullProgressMonitor());
+		return entries;
+	}
+	
+	/**
+	 * Empties the plugin caches, so the next extraction reads the java model again
+	 */
+	static void clearCaches() {
+		Activator plugin = Activator.getPlugin();
+		plugin.getHierarchyCache().clear();
+		plugin.getJavadocCache().clear();
+		plugin.getDeclaredMembersCache().clear();
+		plugin.getFieldInitializers().clear();
+		plugin.getFragmentCache().clear();
+	}
+	
+	/**
+	 * Creates the missing projects. The first project holds the base type,
+	 * the others depend on it. The projects generated with other sizes, or
+	 * beyond the number of projects, are deleted.
+	 */
+	private void generateWorkspace(final IWorkspace workspace) throws CoreException {
+		final String sizes = packages + "x" + types + "x" + members;
+		workspace.run(new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				for (IProject project: workspace.getRoot().getProjects()) {
+					if (!project.getName().startsWith(PROJECT_PREFIX)) {
+						continue;
+					}
+					if (!project.isOpen()) {
+						project.open(monitor);
+					}
+					String index = project.getName().substring(PROJECT_PREFIX.length());
+					boolean inRange;
+					try {
+						inRange = Integer.parseInt(index) < projects;
+					} catch (NumberFormatException e) {
+						inRange = false;
+					}
+					if (!inRange || !sizes.equals(project.getPersistentProperty(SIZES))) {
+						System.out.println("Deleting " + project.getName());
+						project.delete(true, true, monitor);
+					}
+				}
+				for (int p = 0; p < projects; p++) {
+					IProject project = workspace.getRoot().getProject(PROJECT_PREFIX + p);
+					if (project.exists()) {
+						continue;
+					}
+					System.out.println("Generating " + project.getName());
+					generateProject(project, p, monitor);
+					project.setPersistentProperty(SIZES, sizes);
+				}
+			}
+		}, new NullProgressMonitor());
+	}
+	
+	private void generateProject(IProject project, int index, IProgressMonitor monitor) throws CoreException {
+		project.create(monitor);
+		project.open(monitor);
+		IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] {JavaCore.NATURE_ID});
+		project.setDescription(description, monitor);
+		// The sources are written in UTF-8
+		project.setDefaultCharset("UTF-8", monitor);
+		
+		IFolder src = project.getFolder("src");
+		src.create(true, true, monitor);
+		ArrayList<IClasspathEntry> classpath = new ArrayList<IClasspathEntry>();
+		classpath.add(JavaCore.newSourceEntry(src.getFullPath()));
+		classpath.add(JavaCore.newContainerEntry(new Path(JRE_CONTAINER)));
+		if (index > 0) {
+			classpath.add(JavaCore.newProjectEntry(new Path("/" + PROJECT_PREFIX + 0)));
+		}
+		IJavaProject javaProject = JavaCore.create(project);
+		javaProject.setRawClasspath(classpath.toArray(new IClasspathEntry[classpath.size()]),
+				project.getFolder("bin").getFullPath(), monitor);
+		
+		if (index == 0) {
+			createFile(src, "wikibench/base", "BenchSystemObject",
+					"package wikibench.base;\n\npublic class BenchSystemObject {\n}\n", monitor);
+		}
+		for (int k = 0; k < packages; k++) {
+			String packageName = PROJECT_PREFIX + ".p" + index + ".pkg" + k;
+			for (int t = 0; t < types; t++) {
+				String typeName = "Object" + t;
+				createFile(src, packageName.replace('.', '/'), typeName,
+						generateType(packageName, typeName, t), monitor);
+			}
+		}
+	}
+	
+	/**
+	 * Every other type extends the previous one, so the hierarchies have some depth
+	 */
+	private String generateType(String packageName, String typeName, int t) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("package ").append(packageName).append(";\n\n");
+		buf.append("/**\n * Generated system object <a href=\"#x\">").append(typeName).append("</a>\n */\n");
+		buf.append("public class ").append(typeName).append(" extends ");
+		buf.append(t % 2 == 1 ? "Object" + (t - 1) : BASE_TYPE).append(" {\n");
+		for (int m = 0; m < members; m++) {
+			if (m % 2 == 0) {
+				buf.append("\t/**\n\t * Field ").append(m).append(" of ").append(typeName).append("\n\t */\n");
+				buf.append("\tpublic String field").append(m).append(" = new String(\"value ").append(m).append("\");\n\n");
+			} else {
+				buf.append("\t/**\n\t * Method ").append(m).append(" of ").append(typeName).append("\n\t * @param value the value\n\t */\n");
+				buf.append("\tpublic void method").append(m).append("(int value) {\n\t}\n\n");
+			}
+		}
+		buf.append("}\n");
+		return buf.toString();
+	}
+	
+	private static void createFile(IFolder src, String packagePath, String typeName, String source,
+			IProgressMonitor monitor) throws CoreException {
+		IFolder folder = src;
+		for (String segment: packagePath.split("/")) {
+			folder = folder.getFolder(segment);
+			if (!folder.exists()) {
+				folder.create(true, true, monitor);
+			}
+		}
+		byte[] bytes;
+		try {
+			bytes = source.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		folder.getFile(typeName + ".java").create(new ByteArrayInputStream(bytes), true, monitor);
+	}
+}
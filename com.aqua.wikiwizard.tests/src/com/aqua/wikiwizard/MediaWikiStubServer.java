@@ -0,0 +1,380 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aqua.wikiwizard;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local stand in for the MediaWiki API, answering the requests of the
+ * {@link MediaWikiPublisher} over HTTP on the loop back interface.
+ * The pages are kept in memory with the SHA-1 of their text.
+ * <p>
+ * Like the wiki, the stub upper cases the first letter of the titles,
+ * refuses more than {@link MediaWikiPublisher#TITLES_PER_REQUEST} titles
+ * per query, checks the login, the edit token and the MD5 of the edits.
+ * It counts the requests so that a check can tell what was sent.
+ */
+class MediaWikiStubServer {
+	
+	private static final String SESSION_COOKIE = "stubsession";
+	
+	private String user;
+	private String password;
+	private ServerSocket serverSocket;
+	private ExecutorService executor;
+	
+	// Guarded by this
+	private HashMap<String, Session> sessions = new HashMap<String, Session>();
+	private HashMap<String, String> pageHashes = new HashMap<String, String>();
+	private int nextId = 1;
+	private int edits;
+	private int revisionRequests;
+	private int largestBatch;
+	
+	private static class Session {
+		String loginToken;
+		String user;
+		String editToken;
+	}
+	
+	/**
+	 * @param user
+	 * 			The only user allowed to edit
+	 * @param password
+	 * 			The password of the user
+	 */
+	MediaWikiStubServer(String user, String password) {
+		this.user = user;
+		this.password = password;
+	}
+	
+	/**
+	 * Listens on a free port until stopped
+	 */
+	void start() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		executor = Executors.newCachedThreadPool();
+		executor.execute(new Runnable() {
+			public void run() {
+				accept();
+			}
+		});
+	}
+	
+	void stop() {
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// Closed anyway
+		}
+		executor.shutdownNow();
+	}
+	
+	URL getApiUrl() {
+		try {
+			return new URL("http://127.0.0.1:" + serverSocket.getLocalPort() + "/w/api.php");
+		} catch (MalformedURLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Returns the number of saved edits
+	 */
+	synchronized int getEdits() {
+		return edits;
+	}
+	
+	/**
+	 * Returns the number of answered revision queries
+	 */
+	synchronized int getRevisionRequests() {
+		return revisionRequests;
+	}
+	
+	/**
+	 * Returns the most titles asked by a revision query
+	 */
+	synchronized int getLargestBatch() {
+		return largestBatch;
+	}
+	
+	/**
+	 * Resets the counters, the pages are kept
+	 */
+	synchronized void resetCounters() {
+		edits = 0;
+		revisionRequests = 0;
+		largestBatch = 0;
+	}
+	
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				// Stopped
+				return;
+			}
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						serve(socket);
+					} catch (IOException e) {
+						// The client went away
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException e) {
+							// Closed anyway
+						}
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Answers one request, the connection is then closed
+	 */
+	private void serve(Socket socket) throws IOException {
+		InputStream in = new BufferedInputStream(socket.getInputStream());
+		String requestLine = readLine(in);
+		if (requestLine == null) {
+			return;
+		}
+		int contentLength = 0;
+		String cookie = null;
+		String line;
+		while ((line = readLine(in)) != null && line.length() > 0) {
+			int colon = line.indexOf(':');
+			if (colon == -1) {
+				continue;
+			}
+			String name = line.substring(0, colon).trim();
+			String value = line.substring(colon + 1).trim();
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				contentLength = Integer.parseInt(value);
+			} else if ("Cookie".equalsIgnoreCase(name)) {
+				cookie = value;
+			}
+		}
+		byte[] body = new byte[contentLength];
+		int read = 0;
+		while (read < contentLength) {
+			int count = in.read(body, read, contentLength - read);
+			if (count == -1) {
+				throw new SocketException("Truncated request");
+			}
+			read += count;
+		}
+		
+		StringBuilder setCookie = new StringBuilder();
+		String response;
+		if (!requestLine.startsWith("POST ")) {
+			response = error("mustbeposted", "The request must be posted");
+		} else {
+			Session session;
+			synchronized (this) {
+				String id = getCookie(cookie, SESSION_COOKIE);
+				session = id == null ? null : sessions.get(id);
+				if (session == null) {
+					id = String.valueOf(nextId++);
+					session = new Session();
+					sessions.put(id, session);
+					setCookie.append(SESSION_COOKIE).append('=').append(id).append("; path=/; HttpOnly");
+				}
+			}
+			response = answer(parseForm(new String(body, "UTF-8")), session);
+		}
+		
+		byte[] bytes = ("<?xml version=\"1.0\"?><api>" + response + "</api>").getBytes("UTF-8");
+		StringBuilder headers = new StringBuilder("HTTP/1.1 200 OK\r\n");
+		headers.append("Content-Type: text/xml; charset=utf-8\r\n");
+		headers.append("Content-Length: ").append(bytes.length).append("\r\n");
+		headers.append("Connection: close\r\n");
+		if (setCookie.length() > 0) {
+			headers.append("Set-Cookie: ").append(setCookie).append("\r\n");
+		}
+		headers.append("\r\n");
+		OutputStream out = socket.getOutputStream();
+		out.write(headers.toString().getBytes("ISO-8859-1"));
+		out.write(bytes);
+		out.flush();
+	}
+	
+	/**
+	 * Returns the content of the api element for the request
+	 */
+	private synchronized String answer(Map<String, String> parameters, Session session) {
+		if (!"xml".equals(parameters.get("format"))) {
+			return error("badformat", "Only the xml format is served");
+		}
+		String action = parameters.get("action");
+		if ("query".equals(action) && "tokens".equals(parameters.get("meta"))) {
+			if ("login".equals(parameters.get("type"))) {
+				session.loginToken = (nextId++) + "+\\";
+				return "<query><tokens logintoken=\"" + escape(session.loginToken) + "\"/></query>";
+			}
+			// The anonymous token does not allow to edit
+			session.editToken = session.user == null ? "+\\" : (nextId++) + "+\\";
+			return "<query><tokens csrftoken=\"" + escape(session.editToken) + "\"/></query>";
+		}
+		if ("login".equals(action)) {
+			if (session.loginToken == null || !session.loginToken.equals(parameters.get("lgtoken"))) {
+				return "<login result=\"WrongToken\"/>";
+			}
+			session.loginToken = null;
+			if (!user.equals(parameters.get("lgname")) || !password.equals(parameters.get("lgpassword"))) {
+				return "<login result=\"Failed\" reason=\"Incorrect username or password entered.\"/>";
+			}
+			session.user = user;
+			return "<login result=\"Success\" lgusername=\"" + escape(user) + "\"/>";
+		}
+		if ("query".equals(action) && "revisions".equals(parameters.get("prop"))) {
+			return queryRevisions(parameters.get("titles"));
+		}
+		if ("edit".equals(action)) {
+			return edit(parameters, session);
+		}
+		return error("unknownaction", "Unrecognized action " + action);
+	}
+	
+	private String queryRevisions(String titles) {
+		String[] requested = titles == null ? new String[0] : titles.split("\\|");
+		if (requested.length > MediaWikiPublisher.TITLES_PER_REQUEST) {
+			return error("toomanyvalues", "Too many values supplied for parameter titles");
+		}
+		revisionRequests++;
+		largestBatch = Math.max(largestBatch, requested.length);
+		StringBuilder normalized = new StringBuilder();
+		StringBuilder pages = new StringBuilder();
+		for (String title: requested) {
+			String wikiTitle = normalizeTitle(title);
+			if (!wikiTitle.equals(title)) {
+				normalized.append("<n from=\"").append(escape(title)).append("\" to=\"")
+						.append(escape(wikiTitle)).append("\"/>");
+			}
+			String hash = pageHashes.get(wikiTitle);
+			pages.append("<page title=\"").append(escape(wikiTitle)).append('"');
+			if (hash == null) {
+				pages.append(" missing=\"\"/>");
+			} else {
+				pages.append("><revisions><rev sha1=\"").append(hash).append("\"/></revisions></page>");
+			}
+		}
+		StringBuilder buf = new StringBuilder("<query>");
+		if (normalized.length() > 0) {
+			buf.append("<normalized>").append(normalized).append("</normalized>");
+		}
+		buf.append("<pages>").append(pages).append("</pages></query>");
+		return buf.toString();
+	}
+	
+	private String edit(Map<String, String> parameters, Session session) {
+		String token = parameters.get("token");
+		if (session.user == null || token == null || !token.equals(session.editToken)) {
+			return error("badtoken", "Invalid CSRF token");
+		}
+		String title = parameters.get("title");
+		String text = parameters.get("text");
+		if (title == null || text == null) {
+			return error("missingparam", "The title and text parameters are required");
+		}
+		if (!MediaWikiPublisher.digest("MD5", text).equals(parameters.get("md5"))) {
+			return error("badmd5", "The supplied MD5 hash was incorrect");
+		}
+		pageHashes.put(normalizeTitle(title), MediaWikiPublisher.digest("SHA-1", text));
+		edits++;
+		return "<edit result=\"Success\" title=\"" + escape(normalizeTitle(title)) + "\"/>";
+	}
+	
+	private static String normalizeTitle(String title) {
+		title = title.trim();
+		if (title.length() == 0) {
+			return title;
+		}
+		return Character.toUpperCase(title.charAt(0)) + title.substring(1);
+	}
+	
+	private static String error(String code, String info) {
+		return "<error code=\"" + code + "\" info=\"" + escape(info) + "\"/>";
+	}
+	
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+	
+	private static Map<String, String> parseForm(String body) throws IOException {
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		for (String pair: body.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+						URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+			}
+		}
+		return parameters;
+	}
+	
+	private static String getCookie(String header, String name) {
+		if (header == null) {
+			return null;
+		}
+		for (String pair: header.split(";")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0 && pair.substring(0, equals).trim().equals(name)) {
+				return pair.substring(equals + 1).trim();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads a header line, without the line end. Null at the end of the stream.
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1 && b != '\n') {
+			if (b != '\r') {
+				line.write(b);
+			}
+		}
+		if (b == -1 && line.size() == 0) {
+			return null;
+		}
+		return line.toString("ISO-8859-1");
+	}
+}
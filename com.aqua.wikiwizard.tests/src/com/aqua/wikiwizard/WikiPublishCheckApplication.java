@@ -0,0 +1,154 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aqua.wikiwizard;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+/**
+ * Checks the {@link MediaWikiPublisher} against a {@link MediaWikiStubServer},
+ * without a workbench or a wiki. Runs as the
+ * <code>com.aqua.wikiwizard.publishcheck</code> application of this fragment,
+ * which joins the plugin only where the tests are installed:
+ * <pre>
+ * eclipse -nosplash -application com.aqua.wikiwizard.publishcheck -data &lt;workspace&gt; [-pages &lt;n&gt;]
+ * </pre>
+ * The pages are published, published again unchanged and then with a few
+ * changes, so that the login, the batches of revision queries and the
+ * skipping of the pages the wiki already has are checked. Each check is
+ * printed with PASS or FAIL and the exit code is 1 if one failed.
+ */
+public class WikiPublishCheckApplication implements IApplication {
+	
+	private static final String USER = "WikiExport";
+	private static final String PASSWORD = "stub password";
+	private static final int CHANGED_PAGES = 5;
+	
+	private int pageCount = 2 * MediaWikiPublisher.TITLES_PER_REQUEST + 20;
+	private boolean failed = false;
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		if (!parseArguments(args)) {
+			System.err.println("Usage: [-pages <n>]");
+			return Integer.valueOf(1);
+		}
+		
+		MediaWikiStubServer server = new MediaWikiStubServer(USER, PASSWORD);
+		server.start();
+		try {
+			int batches = (pageCount + MediaWikiPublisher.TITLES_PER_REQUEST - 1)
+					/ MediaWikiPublisher.TITLES_PER_REQUEST;
+			
+			// The titles start lower cased, as the wiki normalizes them
+			LinkedHashMap<String, String> pages = new LinkedHashMap<String, String>();
+			for (int i = 0; i < pageCount; i++) {
+				pages.put("system object " + i, "== System object " + i + " ==\n\nFirst revision\n");
+			}
+			IStatus status = publish(server, PASSWORD, pages);
+			check("first publish succeeds", status.isOK());
+			check("all the pages are edited", server.getEdits() == pageCount);
+			check("the revisions are asked in " + batches + " batches", server.getRevisionRequests() == batches);
+			check("a batch has at most " + MediaWikiPublisher.TITLES_PER_REQUEST + " titles",
+					server.getLargestBatch() <= MediaWikiPublisher.TITLES_PER_REQUEST);
+			
+			// Same text as the wiki saves it, with other line ends and trailing white space
+			LinkedHashMap<String, String> unchanged = new LinkedHashMap<String, String>();
+			for (Map.Entry<String, String> page: pages.entrySet()) {
+				unchanged.put(page.getKey(), page.getValue().replace("\n", "\r\n") + "  \r\n");
+			}
+			status = publish(server, PASSWORD, unchanged);
+			check("second publish succeeds", status.isOK());
+			check("the unchanged pages are skipped", server.getEdits() == 0);
+			check("the revisions are asked again", server.getRevisionRequests() == batches);
+			
+			for (int i = 0; i < CHANGED_PAGES; i++) {
+				pages.put("system object " + (i * 7), "== System object " + (i * 7) + " ==\n\nSecond revision\n");
+			}
+			status = publish(server, PASSWORD, pages);
+			check("third publish succeeds", status.isOK());
+			check("only the changed pages are edited", server.getEdits() == CHANGED_PAGES);
+			
+			status = publish(server, "wrong password", pages);
+			check("a wrong password fails", status.getSeverity() == IStatus.ERROR);
+			check("nothing is asked without a login", server.getRevisionRequests() == 0 && server.getEdits() == 0);
+			
+			status = publish(server, null, pages);
+			check("a missing password fails", status.getSeverity() == IStatus.ERROR);
+		} finally {
+			server.stop();
+		}
+		
+		System.out.println(failed ? "FAILED" : "PASSED");
+		return failed ? Integer.valueOf(1) : EXIT_OK;
+	}
+
+	@Override
+	public void stop() {
+	}
+	
+	private boolean parseArguments(String[] args) {
+		if (args == null) {
+			return true;
+		}
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if ("-pages".equals(args[i])) {
+					pageCount = Integer.parseInt(args[++i]);
+				} else {
+					return false;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return false;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return pageCount > 0;
+	}
+	
+	/**
+	 * Publishes the pages with a new publisher, the counters of the server are reset first
+	 */
+	private IStatus publish(MediaWikiStubServer server, String password, Map<String, String> pages) {
+		server.resetCounters();
+		MediaWikiPublisher publisher = new MediaWikiPublisher(new WikiExportModel(new WikiFormater()),
+				server.getApiUrl(), 4);
+		publisher.setCredentials(USER, password);
+		IStatus status = publisher.publishPages(pages, new ExportMetrics(), new NullProgressMonitor());
+		if (!status.isOK()) {
+			System.out.println("  " + status.getMessage());
+			for (IStatus child: status.getChildren()) {
+				System.out.println("    " + child.getMessage()
+						+ (child.getException() == null ? "" : ": " + child.getException().getMessage()));
+			}
+		}
+		return status;
+	}
+	
+	private void check(String name, boolean passed) {
+		System.out.println((passed ? "PASS " : "FAIL ") + name);
+		failed |= !passed;
+	}
+}
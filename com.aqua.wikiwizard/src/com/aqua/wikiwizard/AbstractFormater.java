@@ -0,0 +1,156 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.IOException;
+
+/**
+ * Base of the formaters that only write to an <code>Appendable</code>.
+ * The string returning methods render into a buffer.
+ */
+public abstract class AbstractFormater implements AppendableFormater {
+	
+	private interface Part {
+		void append(StringBuilder buf) throws IOException;
+	}
+	
+	private static String render(Part part) {
+		StringBuilder buf = new StringBuilder();
+		try {
+			part.append(buf);
+		} catch (IOException e) {
+			// A StringBuilder does not throw
+			throw new IllegalStateException(e);
+		}
+		return buf.toString();
+	}
+
+	@Override
+	public String h1(final String header) {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				h1(buf, header);
+			}
+		});
+	}
+
+	@Override
+	public String h2(final String header) {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				h2(buf, header);
+			}
+		});
+	}
+
+	@Override
+	public String h3(final String header) {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				h3(buf, header);
+			}
+		});
+	}
+
+	@Override
+	public String h4(final String header) {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				h4(buf, header);
+			}
+		});
+	}
+
+	@Override
+	public String bold(final String text) {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				bold(buf, text);
+			}
+		});
+	}
+
+	@Override
+	public String tab() {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				tab(buf);
+			}
+		});
+	}
+
+	@Override
+	public String lineBreak() {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				lineBreak(buf);
+			}
+		});
+	}
+
+	@Override
+	public String formatText(final String text) {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				formatText(buf, text);
+			}
+		});
+	}
+
+	@Override
+	public String link(final String link, final String title) {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				link(buf, link, title);
+			}
+		});
+	}
+
+	@Override
+	public String bullet() {
+		return render(new Part() {
+			public void append(StringBuilder buf) throws IOException {
+				bullet(buf);
+			}
+		});
+	}
+	
+	/**
+	 * Escapes the XML special characters of a name
+	 */
+	protected static void escape(Appendable out, String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '<':
+				out.append("&lt;");
+				break;
+			case '>':
+				out.append("&gt;");
+				break;
+			case '&':
+				out.append("&amp;");
+				break;
+			case '"':
+				out.append("&quot;");
+				break;
+			default:
+				out.append(c);
+			}
+		}
+	}
+}
@@ -16,6 +16,15 @@
 
 package com.aqua.wikiwizard;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.core.resources.ISavedState;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
@@ -27,6 +36,43 @@ public class Activator extends AbstractUIPlugin {
 	
 	public static final String PLUGIN_ID = "com.aqua.wikiwizard";
 	
+	// Preferences
+	public static final String ONLY_SUBCLASSES = "onlySubclasses";
+	public static final String WALK_PROJECTS = "walkProjects";
+	public static final String BASE_TYPE = "baseType";
+	public static final String OUTPUT_DIRECTORY = "outputDirectory";
+	public static final String EXPORT_THREADS = "exportThreads";
+	public static final String PARALLEL_MEMBERS = "parallelMembers";
+	public static final String INCREMENTAL_EXPORT = "incrementalExport";
+	public static final String EXPORT_FORMATS = "exportFormats";
+	public static final String SITE_EXPORT = "siteExport";
+	public static final String WIKI_API_URL = "wikiApiUrl";
+	public static final String WIKI_USER = "wikiUser";
+	public static final String PUBLISH_CONNECTIONS = "publishConnections";
+	
+	public static final String DEFAULT_BASE_TYPE = "jsystem.framework.system.SystemObjectImpl";
+	
+	// Catalog of the workspace types shared by all the wizards
+	private TypeCatalog typeCatalog;
+	
+	// Superclasses of the exported types
+	private TypeHierarchyCache hierarchyCache;
+	
+	// Cleaned javadoc of the exported members
+	private JavadocCache javadocCache;
+	
+	// Initial values of the exported fields
+	private FieldInitializerExtractor fieldInitializers;
+	
+	// Documented members of the exported types and their superclasses
+	private DeclaredMembersCache declaredMembersCache;
+	
+	// Rendered sections of the members, shared by the subclass pages
+	private RenderedFragmentCache fragmentCache = new RenderedFragmentCache();
+	
+	// Documents the members of a system object in parallel
+	private ExecutorService memberExecutor = null;
+	
 	public Activator() {
 		plugin = this;
 	}
@@ -36,6 +82,131 @@ public class Activator extends AbstractUIPlugin {
 	 */
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
+		
+		IPreferenceStore store = getPreferenceStore();
+		store.setDefault(ONLY_SUBCLASSES, false);
+		store.setDefault(WALK_PROJECTS, false);
+		store.setDefault(BASE_TYPE, DEFAULT_BASE_TYPE);
+		store.setDefault(EXPORT_THREADS, Runtime.getRuntime().availableProcessors());
+		store.setDefault(PARALLEL_MEMBERS, true);
+		store.setDefault(INCREMENTAL_EXPORT, false);
+		store.setDefault(EXPORT_FORMATS, ExportFormat.WIKI.name());
+		store.setDefault(SITE_EXPORT, false);
+		store.setDefault(PUBLISH_CONNECTIONS, 4);
+		
+		typeCatalog = new TypeCatalog(getStateLocation().append("types.catalog").toFile());
+		JavaCore.addElementChangedListener(typeCatalog, ElementChangedEvent.POST_CHANGE);
+		
+		hierarchyCache = new TypeHierarchyCache();
+		JavaCore.addElementChangedListener(hierarchyCache, ElementChangedEvent.POST_CHANGE);
+		
+		javadocCache = new JavadocCache();
+		JavaCore.addElementChangedListener(javadocCache, ElementChangedEvent.POST_CHANGE);
+		
+		fieldInitializers = new FieldInitializerExtractor();
+		JavaCore.addElementChangedListener(fieldInitializers, ElementChangedEvent.POST_CHANGE);
+		
+		declaredMembersCache = new DeclaredMembersCache();
+		JavaCore.addElementChangedListener(declaredMembersCache, ElementChangedEvent.POST_CHANGE);
+		
+		// Reload the last session catalog and apply what changed since
+		ISavedState lastState = ResourcesPlugin.getWorkspace().addSaveParticipant(PLUGIN_ID, typeCatalog);
+		if (lastState != null && typeCatalog.load()) {
+			lastState.processResourceChangeEvents(typeCatalog);
+		}
+	}
+	
+	/**
+	 * Stops
+	 */
+	public void stop(BundleContext context) throws Exception {
+		JavaCore.removeElementChangedListener(typeCatalog);
+		JavaCore.removeElementChangedListener(hierarchyCache);
+		JavaCore.removeElementChangedListener(javadocCache);
+		JavaCore.removeElementChangedListener(fieldInitializers);
+		JavaCore.removeElementChangedListener(declaredMembersCache);
+		synchronized (this) {
+			if (memberExecutor != null) {
+				memberExecutor.shutdownNow();
+				memberExecutor = null;
+			}
+		}
+		ResourcesPlugin.getWorkspace().removeSaveParticipant(PLUGIN_ID);
+		super.stop(context);
+	}
+	
+	/**
+	 * Returns the catalog of the workspace types
+	 * @return
+	 * 			TypeCatalog
+	 */
+	public TypeCatalog getTypeCatalog() {
+		return typeCatalog;
+	}
+	
+	/**
+	 * Returns the cache of the type superclasses
+	 * @return
+	 * 			TypeHierarchyCache
+	 */
+	public TypeHierarchyCache getHierarchyCache() {
+		return hierarchyCache;
+	}
+	
+	/**
+	 * Returns the cache of the members declared by each type
+	 * @return
+	 * 			DeclaredMembersCache
+	 */
+	public DeclaredMembersCache getDeclaredMembersCache() {
+		return declaredMembersCache;
+	}
+	
+	/**
+	 * Returns the cache of the rendered member sections
+	 * @return
+	 * 			RenderedFragmentCache
+	 */
+	public RenderedFragmentCache getFragmentCache() {
+		return fragmentCache;
+	}
+	
+	/**
+	 * Returns the cache of the members javadoc
+	 * @return
+	 * 			JavadocCache
+	 */
+	public JavadocCache getJavadocCache() {
+		return javadocCache;
+	}
+	
+	/**
+	 * Returns the extractor of the fields initial values
+	 * @return
+	 * 			FieldInitializerExtractor
+	 */
+	public FieldInitializerExtractor getFieldInitializers() {
+		return fieldInitializers;
+	}
+	
+	/**
+	 * Returns the executor used to document the members in parallel,
+	 * bounded to the number of processors
+	 * @return
+	 * 			ExecutorService
+	 */
+	public synchronized ExecutorService getMemberExecutor() {
+		if (memberExecutor == null) {
+			memberExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "Wiki export members");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return memberExecutor;
 	}
 	
 	private static Activator plugin;
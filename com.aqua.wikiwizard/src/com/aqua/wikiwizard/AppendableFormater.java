@@ -0,0 +1,43 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.IOException;
+
+/**
+ * Formater that appends its output to the page instead of returning a new string.
+ * The page is usually a <code>StringBuilder</code> or a <code>Writer</code>.
+ */
+public interface AppendableFormater extends Formater {
+	public void h1(Appendable out, String header) throws IOException;
+	public void h2(Appendable out, String header) throws IOException;
+	public void h3(Appendable out, String header) throws IOException;
+	public void h4(Appendable out, String header) throws IOException;
+	public void bold(Appendable out, String text) throws IOException;
+	public void tab(Appendable out) throws IOException;
+	public void lineBreak(Appendable out) throws IOException;
+	public void formatText(Appendable out, String text) throws IOException;
+	
+	/**
+	 * Writes source text, like a type name or a default value, escaped for the
+	 * format. <code>formatText</code> writes the javadoc HTML as is.
+	 */
+	public void code(Appendable out, String text) throws IOException;
+	public void link(Appendable out, String link, String title) throws IOException;
+	public void bullet(Appendable out) throws IOException;
+	
+}
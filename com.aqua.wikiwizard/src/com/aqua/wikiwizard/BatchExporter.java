@@ -0,0 +1,419 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IParent;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Exports many system objects at once, one wiki page per type written
+ * to the output directory. The pages are rendered by a bounded pool of threads.
+ * Does not depend on the UI.
+ */
+public class BatchExporter {
+	
+	public static final String REPORT_FILE_NAME = "export-report.json";
+	
+	private WikiExportModel exportModel;
+	private File outputDirectory;
+	private int threads;
+	private boolean incremental = false;
+	private List<ExportFormat> formats = Collections.singletonList(ExportFormat.WIKI);
+	private boolean site = false;
+	private SiteLinkIndex siteLinks;
+	
+	/**
+	 * @param exportModel
+	 * 			The model reading the system objects
+	 * @param outputDirectory
+	 * 			Directory of the pages, created if needed
+	 * @param threads
+	 * 			Maximum number of pages rendered at once
+	 */
+	public BatchExporter(WikiExportModel exportModel, File outputDirectory, int threads) {
+		this.exportModel = exportModel;
+		this.outputDirectory = outputDirectory;
+		this.threads = Math.max(1, threads);
+	}
+	
+	/**
+	 * Sets the incremental mode. When set, the pages of the types whose source
+	 * and superclasses did not change since the last export are not written again,
+	 * and the pages of the types deleted since are removed.
+	 * @param incremental
+	 * 			true to skip the unchanged pages
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+	
+	/**
+	 * Sets the formats of the pages, one file per format is written for
+	 * every type. The java model is read once for all of them.
+	 * @param formats
+	 * 			The formats, WIKI by default
+	 */
+	public void setFormats(List<ExportFormat> formats) {
+		this.formats = new ArrayList<ExportFormat>(formats);
+	}
+	
+	/**
+	 * Sets the site mode. When set, the pages only link to the exported types,
+	 * field and return types included, and package index pages are written.
+	 * @param site
+	 * 			true to export a linked site
+	 */
+	public void setSite(boolean site) {
+		this.site = site;
+	}
+	
+	/**
+	 * Collects the source types of the given elements. Types are taken as is,
+	 * projects, packages and compilation units are expanded to their types.
+	 * @param elements
+	 * 			The java elements to export
+	 * @param monitor
+	 * 			Progress monitor
+	 * @return
+	 * 			List of IType
+	 * @throws JavaModelException
+	 */
+	public static List<IType> collectTypes(List<IJavaElement> elements, IProgressMonitor monitor) throws JavaModelException {
+		LinkedHashSet<IType> types = new LinkedHashSet<IType>();
+		for (IJavaElement element: elements) {
+			if (monitor.isCanceled()) {
+				break;
+			}
+			if (element instanceof IType) {
+				types.add((IType)element);
+			} else if (element instanceof IParent) {
+				ArrayList<IType> found = new ArrayList<IType>();
+				WikiExportModel.collectAllTypesInProject(found, (IParent)element, monitor);
+				types.addAll(found);
+			}
+		}
+		return new ArrayList<IType>(types);
+	}
+	
+	/**
+	 * Exports the pages of the given elements
+	 * @param elements
+	 * 			Types, compilation units, packages or projects
+	 * @param metrics
+	 * 			The metrics of this run, written to the report
+	 * @param monitor
+	 * 			Progress monitor, the export stops when it is canceled
+	 * @return
+	 * 			A status with the failed pages, if any
+	 */
+	public IStatus export(List<IJavaElement> elements, ExportMetrics metrics, IProgressMonitor monitor) {
+		SubMonitor progress = SubMonitor.convert(monitor, "Exporting system objects", 100);
+		try {
+			List<IType> types;
+			try {
+				types = collectTypes(elements, progress.split(5));
+			} catch (JavaModelException e) {
+				return e.getStatus();
+			}
+			return exportTypes(types, metrics, progress.split(95));
+		} catch (OperationCanceledException e) {
+			return Status.CANCEL_STATUS;
+		} finally {
+			monitor.done();
+		}
+	}
+	
+	/**
+	 * Renders and writes a page for every type
+	 */
+	private IStatus exportTypes(List<IType> types, final ExportMetrics metrics, IProgressMonitor monitor) {
+		monitor.beginTask("Exporting system objects", types.size());
+		MultiStatus result = new MultiStatus(Activator.PLUGIN_ID, IStatus.OK,
+				"Some of the system objects were not exported", null);
+		
+		if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			result.add(new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+					"Failed to create " + outputDirectory));
+			return result;
+		}
+		
+		final ExportManifest manifest = incremental ? new ExportManifest(outputDirectory) : null;
+		if (manifest != null) {
+			manifest.load();
+		}
+		String version = exportModel.getFormatVersion() + "/" + ExportFormat.toString(formats);
+		if (site) {
+			// The links of every page change when a type is added or removed
+			siteLinks = new SiteLinkIndex(types);
+			version += "/site:" + siteLinks.getFingerprint();
+		}
+		final String formatVersion = version;
+		final AppendableFormater[] formaters = new AppendableFormater[formats.size()];
+		for (int i = 0; i < formaters.length; i++) {
+			formaters[i] = formats.get(i).createFormater();
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CompletionService<IStatus> completion = new ExecutorCompletionService<IStatus>(executor);
+		try {
+			for (final IType type: types) {
+				completion.submit(new Callable<IStatus>() {
+					public IStatus call() {
+						String name = type.getFullyQualifiedName();
+						try {
+							if (incremental) {
+								String fingerprint = ExportManifest.fingerprint(type, formatVersion, metrics);
+								if (manifest.isUnchanged(name, fingerprint) && pagesExist(type)) {
+									metrics.increment(ExportMetrics.Counter.PAGES_SKIPPED);
+									return new Status(IStatus.OK, Activator.PLUGIN_ID, "Unchanged " + name);
+								}
+								writePages(type, formaters, metrics);
+								manifest.put(name, fingerprint);
+							} else {
+								writePages(type, formaters, metrics);
+							}
+							return new Status(IStatus.OK, Activator.PLUGIN_ID, name);
+						} catch (Exception e) {
+							return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to export " + name, e);
+						}
+					}
+				});
+			}
+			
+			// The monitor is only used from this thread
+			for (int i = 0; i < types.size(); i++) {
+				Future<IStatus> future = null;
+				while (future == null) {
+					if (monitor.isCanceled()) {
+						return Status.CANCEL_STATUS;
+					}
+					future = completion.poll(200, TimeUnit.MILLISECONDS);
+				}
+				IStatus status = future.get();
+				if (status.isOK()) {
+					monitor.subTask(status.getMessage());
+				} else {
+					result.add(status);
+				}
+				monitor.worked(1);
+			}
+			if (manifest != null) {
+				removeDeletedPages(manifest, result);
+			}
+			if (siteLinks != null) {
+				writeIndexPages(formaters, result);
+			}
+		} catch (ExecutionException e) {
+			result.add(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Export failed", e.getCause()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Status.CANCEL_STATUS;
+		} finally {
+			executor.shutdownNow();
+			// The pages being written are completed, or their temporary files removed
+			try {
+				executor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (manifest != null) {
+				// Keeps the pages written so far, even when canceled
+				try {
+					manifest.save();
+				} catch (IOException e) {
+					result.add(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to write the export manifest", e));
+				}
+			}
+			siteLinks = null;
+			writeReport(result, metrics);
+			monitor.done();
+		}
+		return result;
+	}
+	
+	/**
+	 * Writes the site index page and the package pages in every format
+	 */
+	private void writeIndexPages(AppendableFormater[] formaters, MultiStatus result) {
+		for (int i = 0; i < formaters.length; i++) {
+			ExportFormat format = formats.get(i);
+			try {
+				Writer writer = openPage(new File(outputDirectory, SiteLinkIndex.INDEX_PAGE + format.getExtension()));
+				try {
+					siteLinks.writeIndexPage(formaters[i], writer);
+				} finally {
+					writer.close();
+				}
+				for (String packageName: siteLinks.getPackages()) {
+					String page = SiteLinkIndex.getPackagePage(packageName);
+					writer = openPage(new File(outputDirectory, page + format.getExtension()));
+					try {
+						siteLinks.writePackagePage(formaters[i], writer, packageName);
+					} finally {
+						writer.close();
+					}
+				}
+			} catch (IOException e) {
+				result.add(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to write the index pages", e));
+			}
+		}
+	}
+	
+	/**
+	 * Removes the pages of the types exported before that are gone from the
+	 * workspace. The types that still exist but were not selected keep their pages.
+	 */
+	private void removeDeletedPages(ExportManifest manifest, MultiStatus result) {
+		try {
+			IJavaProject[] projects = WikiExportModel.getJavaProjects();
+			for (String typeName: manifest.getUnvisited()) {
+				if (typeExists(projects, typeName)) {
+					continue;
+				}
+				manifest.remove(typeName);
+				for (ExportFormat format: formats) {
+					getPageFile(typeName, format).delete();
+				}
+			}
+		} catch (JavaModelException e) {
+			result.add(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Failed to remove the deleted pages", e));
+		}
+	}
+	
+	private static boolean typeExists(IJavaProject[] projects, String typeName) throws JavaModelException {
+		for (IJavaProject project: projects) {
+			IType type = project.findType(typeName);
+			if (type != null && type.exists()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static Writer openPage(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+	
+	/**
+	 * Writes the metrics of the run next to the pages
+	 */
+	private void writeReport(MultiStatus result, ExportMetrics metrics) {
+		File file = new File(outputDirectory, REPORT_FILE_NAME);
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try {
+				writer.write(metrics.toJson());
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			result.add(new Status(IStatus.WARNING, Activator.PLUGIN_ID, "Failed to write " + file, e));
+		}
+	}
+	
+	/**
+	 * Returns the file of the type page
+	 */
+	private File getPageFile(IType type, ExportFormat format) {
+		return getPageFile(type.getFullyQualifiedName(), format);
+	}
+	
+	private File getPageFile(String typeName, ExportFormat format) {
+		return new File(outputDirectory, typeName + format.getExtension());
+	}
+	
+	/**
+	 * Returns true if the pages of the type were written in all the formats
+	 */
+	private boolean pagesExist(IType type) {
+		for (ExportFormat format: formats) {
+			if (!getPageFile(type, format).isFile()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads the type once and writes its page in every format
+	 */
+	private void writePages(IType type, AppendableFormater[] formaters, ExportMetrics metrics) throws Exception {
+		SystemObjectDocument document = exportModel.extractDocument(type, metrics);
+		
+		long start = System.nanoTime();
+		long startBytes = ExportMetrics.allocatedBytes();
+		try {
+			for (int i = 0; i < formaters.length; i++) {
+				writePage(document, formaters[i], getPageFile(type, formats.get(i)), siteLinks, metrics);
+			}
+		} finally {
+			metrics.addTime(ExportMetrics.Phase.OUTPUT, start);
+			metrics.addAllocation(ExportMetrics.Phase.OUTPUT, startBytes);
+		}
+	}
+	
+	/**
+	 * Streams the page to a temporary file, which replaces the page once complete
+	 */
+	private void writePage(SystemObjectDocument document, AppendableFormater formater, File file,
+			SiteLinkIndex links, ExportMetrics metrics) throws Exception {
+		File tempFile = new File(outputDirectory, file.getName() + ".tmp");
+		
+		Writer writer = openPage(tempFile);
+		try {
+			document.write(formater, writer, links, metrics);
+		} catch (Exception e) {
+			writer.close();
+			tempFile.delete();
+			throw e;
+		}
+		writer.close();
+		
+		file.delete();
+		if (!tempFile.renameTo(file)) {
+			throw new IOException("Failed to write " + file);
+		}
+	}
+}
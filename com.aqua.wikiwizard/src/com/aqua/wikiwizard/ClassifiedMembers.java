@@ -0,0 +1,32 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IMethod;
+
+/**
+ * The members of a system object that should appear on its wiki page,
+ * in declaration order, with their flags.
+ */
+public class ClassifiedMembers {
+	
+	public IField[] fields = null;
+	public int[] fieldFlags = null;
+	public IMethod[] methods = null;
+	public int[] methodFlags = null;
+}
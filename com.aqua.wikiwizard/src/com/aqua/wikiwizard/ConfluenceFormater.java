@@ -0,0 +1,40 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.IOException;
+
+/**
+ * Confluence storage format (XHTML) formater. The links are page links
+ * by title, the HTML documentation is made well formed XHTML.
+ */
+public class ConfluenceFormater extends HtmlFormater {
+
+	@Override
+	public void formatText(Appendable out, String text) throws IOException {
+		out.append(text == null ? "N/A" : XhtmlSanitizer.sanitize(text));
+	}
+
+	@Override
+	public void link(Appendable out, String link, String title) throws IOException {
+		out.append(" <ac:link><ri:page ri:content-title=\"");
+		escape(out, link);
+		out.append("\" /><ac:plain-text-link-body><![CDATA[");
+		out.append(title.replace("]]>", "]]]]><![CDATA[>"));
+		out.append("]]></ac:plain-text-link-body></ac:link>");
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Cache of the documented members declared by each type, so the members of
+ * a superclass are read once for all its subclasses. The key is the type
+ * handle identifier and the modification stamp of its compilation unit (or jar).
+ * The least recently used entries are evicted, and the entries of a changed
+ * compilation unit are dropped. The entries with javadoc that may be inherited
+ * from another unit are dropped whenever any compilation unit changes.
+ */
+public class DeclaredMembersCache implements IElementChangedListener {
+	
+	private static final int MAX_ENTRIES = 1000;
+	
+	/**
+	 * The documented members declared by one type, in the classification order,
+	 * and the override keys of all its declarations
+	 */
+	public static final class Members {
+		
+		final SystemObjectSnapshot.Member[] fields;
+		final SystemObjectSnapshot.Member[] methods;
+		final String[] declarations;
+		final boolean inheritsJavaDoc;
+		
+		/**
+		 * @param fields
+		 * 			The documented fields
+		 * @param methods
+		 * 			The documented methods
+		 * @param declarations
+		 * 			Override keys of all the declared fields and methods, documented or not
+		 * @param inheritsJavaDoc
+		 * 			true if a javadoc may come from a supertype in another unit
+		 */
+		public Members(SystemObjectSnapshot.Member[] fields, SystemObjectSnapshot.Member[] methods,
+				String[] declarations, boolean inheritsJavaDoc) {
+			this.fields = fields;
+			this.methods = methods;
+			this.declarations = declarations;
+			this.inheritsJavaDoc = inheritsJavaDoc;
+		}
+	}
+	
+	private LinkedHashMap<String, Members> entries = new LinkedHashMap<String, Members>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Members> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	
+	/**
+	 * Returns the members declared by the type
+	 * @param type
+	 * 			The type
+	 * @return
+	 * 			Members or null if they were not read yet
+	 * @throws JavaModelException
+	 */
+	public Members get(IType type) throws JavaModelException {
+		String key = getKey(type);
+		synchronized (this) {
+			return entries.get(key);
+		}
+	}
+	
+	/**
+	 * Keeps the members declared by the type
+	 * @param type
+	 * 			The type
+	 * @param members
+	 * 			Its documented members
+	 * @throws JavaModelException
+	 */
+	public void put(IType type, Members members) throws JavaModelException {
+		String key = getKey(type);
+		synchronized (this) {
+			entries.put(key, members);
+		}
+	}
+	
+	private static String getKey(IType type) throws JavaModelException {
+		return type.getHandleIdentifier() + "@" + JavaModelUtils.getModificationStamp(type);
+	}
+	
+	/**
+	 * Removes all the entries
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		ArrayList<ICompilationUnit> changedUnits = new ArrayList<ICompilationUnit>();
+		if (!JavaModelUtils.collectChangedUnits(event.getDelta(), changedUnits)) {
+			clear();
+			return;
+		}
+		if (changedUnits.isEmpty()) {
+			return;
+		}
+		
+		// The handle identifier of a type starts with the one of its unit
+		String[] prefixes = new String[changedUnits.size()];
+		for (int i = 0; i < prefixes.length; i++) {
+			prefixes[i] = changedUnits.get(i).getHandleIdentifier();
+		}
+		
+		synchronized (this) {
+			Iterator<Map.Entry<String, Members>> iterator = entries.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, Members> entry = iterator.next();
+				if (entry.getValue().inheritsJavaDoc) {
+					iterator.remove();
+					continue;
+				}
+				String key = entry.getKey();
+				for (String prefix: prefixes) {
+					if (key.startsWith(prefix)) {
+						iterator.remove();
+						break;
+					}
+				}
+			}
+		}
+	}
+}
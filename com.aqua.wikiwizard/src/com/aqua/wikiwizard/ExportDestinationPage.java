@@ -0,0 +1,358 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.dialogs.IDialogPage;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.wizard.WizardPage;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.DirectoryDialog;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Spinner;
+import org.eclipse.swt.widgets.Text;
+
+/**
+ * Second page of the wizard, where to write the exported pages.
+ * By default the page goes to the Wiki console and to the clipboard.
+ * The pages can also be published to a MediaWiki.
+ */
+public class ExportDestinationPage extends WizardPage {
+	
+	private Button directoryButton;
+	private Text directoryText;
+	private Button browseButton;
+	private Spinner threadsSpinner;
+	private Button incrementalButton;
+	private Button siteButton;
+	private Button[] formatButtons;
+	private Button publishButton;
+	private Text apiUrlText;
+	private Text userText;
+	private Text passwordText;
+	private Spinner connectionsSpinner;
+	private Button workbenchSelectionButton;
+	
+	private boolean hasWorkbenchSelection;
+	
+	/**
+	 * @param hasWorkbenchSelection
+	 * 			true if packages or projects were selected when the wizard started
+	 */
+	public ExportDestinationPage(boolean hasWorkbenchSelection) {
+		super("Page 2");
+		setTitle("Destination");
+		setDescription("Where to write the wiki pages");
+		this.hasWorkbenchSelection = hasWorkbenchSelection;
+	}
+
+	/**
+	 * @see IDialogPage#createControl(Composite)
+	 */
+	public void createControl(Composite parent) {
+		Composite composite = new Composite(parent, SWT.NULL);
+		composite.setLayout(new GridLayout(3, false));
+		IPreferenceStore store = Activator.getPlugin().getPreferenceStore();
+		
+		directoryButton = new Button(composite, SWT.CHECK);
+		directoryButton.setText("Write one page per system object to a directory");
+		GridData buttonData = new GridData();
+		buttonData.horizontalSpan = 3;
+		directoryButton.setLayoutData(buttonData);
+		
+		new Label(composite, SWT.NONE).setText("Directory:");
+		directoryText = new Text(composite, SWT.BORDER | SWT.SINGLE);
+		directoryText.setText(store.getString(Activator.OUTPUT_DIRECTORY));
+		directoryText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+		browseButton = new Button(composite, SWT.PUSH);
+		browseButton.setText("Browse...");
+		
+		new Label(composite, SWT.NONE).setText("Threads:");
+		threadsSpinner = new Spinner(composite, SWT.BORDER);
+		threadsSpinner.setValues(store.getInt(Activator.EXPORT_THREADS), 1, 64, 0, 1, 4);
+		new Label(composite, SWT.NONE);
+		
+		new Label(composite, SWT.NONE).setText("Formats:");
+		Composite formatsComposite = new Composite(composite, SWT.NULL);
+		formatsComposite.setLayout(new GridLayout(ExportFormat.values().length, false));
+		GridData formatsData = new GridData();
+		formatsData.horizontalSpan = 2;
+		formatsComposite.setLayoutData(formatsData);
+		List<ExportFormat> formats = ExportFormat.parse(store.getString(Activator.EXPORT_FORMATS));
+		formatButtons = new Button[ExportFormat.values().length];
+		for (ExportFormat format: ExportFormat.values()) {
+			Button button = new Button(formatsComposite, SWT.CHECK);
+			button.setText(format.getExtension());
+			button.setSelection(formats.contains(format));
+			button.addSelectionListener(new SelectionAdapter() {
+				public void widgetSelected(SelectionEvent e) {
+					updateControls();
+				}
+			});
+			formatButtons[format.ordinal()] = button;
+		}
+		
+		incrementalButton = new Button(composite, SWT.CHECK);
+		incrementalButton.setText("Only write the pages of the changed system objects");
+		GridData incrementalData = new GridData();
+		incrementalData.horizontalSpan = 3;
+		incrementalButton.setLayoutData(incrementalData);
+		incrementalButton.setSelection(store.getBoolean(Activator.INCREMENTAL_EXPORT));
+		
+		siteButton = new Button(composite, SWT.CHECK);
+		siteButton.setText("Link the pages together and write the package index pages");
+		GridData siteData = new GridData();
+		siteData.horizontalSpan = 3;
+		siteButton.setLayoutData(siteData);
+		siteButton.setSelection(store.getBoolean(Activator.SITE_EXPORT));
+		
+		publishButton = new Button(composite, SWT.CHECK);
+		publishButton.setText("Publish the changed pages to a MediaWiki");
+		GridData publishData = new GridData();
+		publishData.horizontalSpan = 3;
+		publishButton.setLayoutData(publishData);
+		
+		new Label(composite, SWT.NONE).setText("API URL:");
+		apiUrlText = new Text(composite, SWT.BORDER | SWT.SINGLE);
+		apiUrlText.setText(store.getString(Activator.WIKI_API_URL));
+		GridData apiUrlData = new GridData(GridData.FILL_HORIZONTAL);
+		apiUrlData.horizontalSpan = 2;
+		apiUrlText.setLayoutData(apiUrlData);
+		
+		new Label(composite, SWT.NONE).setText("User:");
+		userText = new Text(composite, SWT.BORDER | SWT.SINGLE);
+		userText.setText(store.getString(Activator.WIKI_USER));
+		GridData userData = new GridData(GridData.FILL_HORIZONTAL);
+		userData.horizontalSpan = 2;
+		userText.setLayoutData(userData);
+		
+		// The password is not kept
+		new Label(composite, SWT.NONE).setText("Password:");
+		passwordText = new Text(composite, SWT.BORDER | SWT.SINGLE | SWT.PASSWORD);
+		GridData passwordData = new GridData(GridData.FILL_HORIZONTAL);
+		passwordData.horizontalSpan = 2;
+		passwordText.setLayoutData(passwordData);
+		
+		new Label(composite, SWT.NONE).setText("Connections:");
+		connectionsSpinner = new Spinner(composite, SWT.BORDER);
+		connectionsSpinner.setValues(store.getInt(Activator.PUBLISH_CONNECTIONS), 1, 16, 0, 1, 4);
+		new Label(composite, SWT.NONE);
+		
+		workbenchSelectionButton = new Button(composite, SWT.CHECK);
+		workbenchSelectionButton.setText("Also export the packages and projects selected in the workbench");
+		GridData selectionData = new GridData();
+		selectionData.horizontalSpan = 3;
+		workbenchSelectionButton.setLayoutData(selectionData);
+		workbenchSelectionButton.setSelection(hasWorkbenchSelection);
+		directoryButton.setSelection(hasWorkbenchSelection);
+		
+		directoryButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				updateControls();
+			}
+		});
+		directoryText.addModifyListener(new ModifyListener() {
+			public void modifyText(ModifyEvent e) {
+				updateControls();
+			}
+		});
+		publishButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				updateControls();
+			}
+		});
+		apiUrlText.addModifyListener(new ModifyListener() {
+			public void modifyText(ModifyEvent e) {
+				updateControls();
+			}
+		});
+		browseButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				DirectoryDialog dialog = new DirectoryDialog(getShell());
+				dialog.setFilterPath(directoryText.getText());
+				String directory = dialog.open();
+				if (directory != null) {
+					directoryText.setText(directory);
+				}
+			}
+		});
+		
+		updateControls();
+		setControl(composite);
+	}
+	
+	private void updateControls() {
+		boolean enabled = directoryButton.getSelection();
+		directoryText.setEnabled(enabled);
+		browseButton.setEnabled(enabled);
+		threadsSpinner.setEnabled(enabled);
+		incrementalButton.setEnabled(enabled);
+		siteButton.setEnabled(enabled);
+		for (Button button: formatButtons) {
+			button.setEnabled(enabled);
+		}
+		boolean publish = publishButton.getSelection();
+		apiUrlText.setEnabled(publish);
+		userText.setEnabled(publish);
+		passwordText.setEnabled(publish);
+		connectionsSpinner.setEnabled(publish);
+		workbenchSelectionButton.setEnabled((enabled || publish) && hasWorkbenchSelection);
+		
+		if (enabled && directoryText.getText().trim().length() == 0) {
+			setErrorMessage("Select the output directory");
+			setPageComplete(false);
+		} else if (enabled && getFormats().isEmpty()) {
+			setErrorMessage("Select at least one format");
+			setPageComplete(false);
+		} else if (publish && getApiUrl() == null) {
+			setErrorMessage("Enter the URL of the wiki API, like http://wiki/w/api.php");
+			setPageComplete(false);
+		} else {
+			setErrorMessage(null);
+			setPageComplete(true);
+		}
+	}
+	
+	/**
+	 * Returns true if the pages should be written to a directory
+	 */
+	public boolean isDirectoryExport() {
+		return directoryButton != null && directoryButton.getSelection();
+	}
+	
+	/**
+	 * Returns true if the workbench selection should be exported too
+	 */
+	public boolean isWorkbenchSelectionExport() {
+		return (isDirectoryExport() || isPublish()) && hasWorkbenchSelection && workbenchSelectionButton.getSelection();
+	}
+	
+	/**
+	 * Returns true if the pages should be published to a wiki
+	 */
+	public boolean isPublish() {
+		return publishButton != null && publishButton.getSelection();
+	}
+	
+	/**
+	 * Returns the URL of the wiki API
+	 * @return
+	 * 			URL or null if the text is not an http URL
+	 */
+	public URL getApiUrl() {
+		try {
+			URL url = new URL(apiUrlText.getText().trim());
+			if (url.getProtocol().equals("http") || url.getProtocol().equals("https")) {
+				return url;
+			}
+		} catch (MalformedURLException e) {
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the wiki user, empty to publish anonymously
+	 */
+	public String getUser() {
+		return userText.getText().trim();
+	}
+	
+	public String getPassword() {
+		return passwordText.getText();
+	}
+	
+	/**
+	 * Returns the number of concurrent requests to the wiki
+	 */
+	public int getConnections() {
+		return connectionsSpinner.getSelection();
+	}
+	
+	/**
+	 * Returns the output directory
+	 */
+	public File getDirectory() {
+		return new File(directoryText.getText().trim());
+	}
+	
+	/**
+	 * Returns the number of rendering threads
+	 */
+	public int getThreads() {
+		return threadsSpinner.getSelection();
+	}
+	
+	/**
+	 * Returns true if the unchanged pages should be skipped
+	 */
+	public boolean isIncremental() {
+		return incrementalButton.getSelection();
+	}
+	
+	/**
+	 * Returns true if the pages should be exported as a linked site
+	 */
+	public boolean isSite() {
+		return siteButton.getSelection();
+	}
+	
+	/**
+	 * Returns the selected page formats
+	 */
+	public List<ExportFormat> getFormats() {
+		ArrayList<ExportFormat> formats = new ArrayList<ExportFormat>();
+		for (ExportFormat format: ExportFormat.values()) {
+			if (formatButtons[format.ordinal()].getSelection()) {
+				formats.add(format);
+			}
+		}
+		return formats;
+	}
+	
+	/**
+	 * Keeps the chosen values for the next time
+	 */
+	public void saveSettings() {
+		if (directoryText == null) {
+			return;
+		}
+		IPreferenceStore store = Activator.getPlugin().getPreferenceStore();
+		store.setValue(Activator.OUTPUT_DIRECTORY, directoryText.getText().trim());
+		store.setValue(Activator.EXPORT_THREADS, threadsSpinner.getSelection());
+		store.setValue(Activator.INCREMENTAL_EXPORT, incrementalButton.getSelection());
+		store.setValue(Activator.SITE_EXPORT, siteButton.getSelection());
+		store.setValue(Activator.WIKI_API_URL, apiUrlText.getText().trim());
+		store.setValue(Activator.WIKI_USER, userText.getText().trim());
+		store.setValue(Activator.PUBLISH_CONNECTIONS, connectionsSpinner.getSelection());
+		if (!getFormats().isEmpty()) {
+			store.setValue(Activator.EXPORT_FORMATS, ExportFormat.toString(getFormats()));
+		}
+	}
+}
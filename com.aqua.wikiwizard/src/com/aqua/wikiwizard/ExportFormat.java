@@ -0,0 +1,107 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The page formats of a directory export
+ */
+public enum ExportFormat {
+	
+	WIKI(".wiki"),
+	MARKDOWN(".md"),
+	CONFLUENCE(".confluence.xml"),
+	HTML(".html");
+	
+	private String extension;
+	
+	private ExportFormat(String extension) {
+		this.extension = extension;
+	}
+	
+	/**
+	 * Returns the extension of the page files
+	 * @return
+	 * 			String like ".wiki"
+	 */
+	public String getExtension() {
+		return extension;
+	}
+	
+	/**
+	 * Returns a new formater for this format
+	 * @return
+	 * 			AppendableFormater
+	 */
+	public AppendableFormater createFormater() {
+		switch (this) {
+		case MARKDOWN:
+			return new MarkdownFormater();
+		case CONFLUENCE:
+			return new ConfluenceFormater();
+		case HTML:
+			return new HtmlFormater();
+		default:
+			return new WikiFormater();
+		}
+	}
+	
+	/**
+	 * Parses a comma separated list of format names, ignoring the unknown ones
+	 * @param names
+	 * 			Like "wiki,html"
+	 * @return
+	 * 			List of ExportFormat, WIKI if none was recognized
+	 */
+	public static List<ExportFormat> parse(String names) {
+		ArrayList<ExportFormat> formats = new ArrayList<ExportFormat>();
+		for (String name: names.split(",")) {
+			try {
+				ExportFormat format = valueOf(name.trim().toUpperCase());
+				if (!formats.contains(format)) {
+					formats.add(format);
+				}
+			} catch (IllegalArgumentException e) {
+				// Unknown format
+			}
+		}
+		if (formats.isEmpty()) {
+			formats.add(WIKI);
+		}
+		return formats;
+	}
+	
+	/**
+	 * Returns the comma separated names of the formats
+	 * @param formats
+	 * 			The formats
+	 * @return
+	 * 			String like "WIKI,HTML"
+	 */
+	public static String toString(List<ExportFormat> formats) {
+		StringBuilder buf = new StringBuilder();
+		for (ExportFormat format: formats) {
+			if (buf.length() > 0) {
+				buf.append(',');
+			}
+			buf.append(format.name());
+		}
+		return buf.toString();
+	}
+}
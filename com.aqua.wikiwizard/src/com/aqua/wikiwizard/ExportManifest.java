@@ -0,0 +1,260 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IImportDeclaration;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Fingerprints of the pages written to an output directory, used to
+ * skip the pages of the types that did not change since the last export.
+ * A fingerprint covers the source and the imports of the type, the source
+ * and the imports of all its superclasses and interfaces and the format
+ * version of the export model.
+ */
+public class ExportManifest {
+	
+	public static final String FILE_NAME = ".wikiexport.manifest";
+	
+	private static final String VERSION = "1";
+	
+	private File file;
+	
+	// Fingerprint by fully qualified type name
+	private ConcurrentHashMap<String, String> fingerprints = new ConcurrentHashMap<String, String>();
+	
+	// Types checked by this export
+	private Set<String> visited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	/**
+	 * @param outputDirectory
+	 * 			The directory of the exported pages
+	 */
+	public ExportManifest(File outputDirectory) {
+		file = new File(outputDirectory, FILE_NAME);
+	}
+	
+	/**
+	 * Reads the fingerprints of the last export, if any.
+	 * An unreadable manifest is ignored and all the pages get exported.
+	 */
+	public void load() {
+		fingerprints.clear();
+		visited.clear();
+		if (!file.isFile()) {
+			return;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				if (!VERSION.equals(reader.readLine())) {
+					return;
+				}
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int tab = line.indexOf('\t');
+					if (tab > 0) {
+						fingerprints.put(line.substring(0, tab), line.substring(tab + 1));
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			fingerprints.clear();
+		}
+	}
+	
+	/**
+	 * Writes the fingerprints, sorted by type name
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+		try {
+			writer.write(VERSION);
+			writer.write('\n');
+			for (Map.Entry<String, String> entry: new TreeMap<String, String>(fingerprints).entrySet()) {
+				writer.write(entry.getKey());
+				writer.write('\t');
+				writer.write(entry.getValue());
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		file.delete();
+		if (!tempFile.renameTo(file)) {
+			throw new IOException("Failed to write " + file);
+		}
+	}
+	
+	/**
+	 * Returns true if the page of the type was exported with the same fingerprint.
+	 * The type is then known to be part of this export.
+	 * @param typeName
+	 * 			Fully qualified type name
+	 * @param fingerprint
+	 * 			The current fingerprint of the type
+	 */
+	public boolean isUnchanged(String typeName, String fingerprint) {
+		visited.add(typeName);
+		return fingerprint.equals(fingerprints.get(typeName));
+	}
+	
+	/**
+	 * Records the fingerprint of an exported page
+	 * @param typeName
+	 * 			Fully qualified type name
+	 * @param fingerprint
+	 * 			Fingerprint of the type when it was exported
+	 */
+	public void put(String typeName, String fingerprint) {
+		visited.add(typeName);
+		fingerprints.put(typeName, fingerprint);
+	}
+	
+	/**
+	 * Returns the types of the last exports that this export did not check
+	 * @return
+	 * 			List of fully qualified type names
+	 */
+	public List<String> getUnvisited() {
+		ArrayList<String> unvisited = new ArrayList<String>();
+		for (String typeName: fingerprints.keySet()) {
+			if (!visited.contains(typeName)) {
+				unvisited.add(typeName);
+			}
+		}
+		return unvisited;
+	}
+	
+	/**
+	 * Forgets the page of a type
+	 * @param typeName
+	 * 			Fully qualified type name
+	 */
+	public void remove(String typeName) {
+		fingerprints.remove(typeName);
+	}
+	
+	/**
+	 * Computes the fingerprint of a type
+	 * @param type
+	 * 			The exported type
+	 * @param formatVersion
+	 * 			Version of the page format
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @return
+	 * 			String, MD5 in hex
+	 * @throws JavaModelException
+	 */
+	public static String fingerprint(IType type, String formatVersion, ExportMetrics metrics)
+			throws JavaModelException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		update(digest, formatVersion);
+		// The interfaces may provide inherited javadoc
+		HashSet<String> interfaces = new HashSet<String>();
+		update(digest, type);
+		updateInterfaces(digest, type, interfaces);
+		for (IType superType: Activator.getPlugin().getHierarchyCache().getAllSuperclasses(type, metrics)) {
+			update(digest, superType);
+			updateInterfaces(digest, superType, interfaces);
+		}
+		
+		byte[] hash = digest.digest();
+		StringBuilder buf = new StringBuilder(hash.length * 2);
+		for (byte b: hash) {
+			buf.append(Character.forDigit((b >> 4) & 0xF, 16));
+			buf.append(Character.forDigit(b & 0xF, 16));
+		}
+		return buf.toString();
+	}
+	
+	private static void update(MessageDigest digest, IType type) throws JavaModelException {
+		update(digest, type.getFullyQualifiedName());
+		// Types without source (binary) are identified by their name only
+		String source = type.getSource();
+		if (source != null) {
+			update(digest, source);
+		}
+		// The imports resolve the names of the field, parameter and return types
+		ICompilationUnit unit = type.getCompilationUnit();
+		if (unit != null) {
+			for (IImportDeclaration declaration: unit.getImports()) {
+				update(digest, (Flags.isStatic(declaration.getFlags()) ? "import static " : "import ")
+						+ declaration.getElementName());
+			}
+		}
+	}
+	
+	/**
+	 * Adds the interfaces of the type and their super interfaces, each once
+	 */
+	private static void updateInterfaces(MessageDigest digest, IType type, Set<String> visited)
+			throws JavaModelException {
+		for (String name: type.getSuperInterfaceNames()) {
+			IType superInterface = JavaModelUtils.findReferencedType(type, name);
+			if (superInterface == null) {
+				update(digest, name);
+			} else if (visited.add(superInterface.getFullyQualifiedName())) {
+				update(digest, superInterface);
+				updateInterfaces(digest, superInterface, visited);
+			}
+		}
+	}
+	
+	private static void update(MessageDigest digest, String text) {
+		try {
+			digest.update(text.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update((byte)0);
+	}
+}
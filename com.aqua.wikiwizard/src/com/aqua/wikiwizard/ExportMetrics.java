@@ -0,0 +1,207 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time, allocation and counters of an export, by phase. Each run creates its own
+ * metrics, the clock starts with the construction and the values are added from any thread.
+ * The allocations are only measured on JVMs reporting the bytes allocated
+ * per thread. Elsewhere <code>allocatedBytes</code> returns -1, the summary
+ * leaves the allocations out and the JSON report gives -1.
+ */
+public class ExportMetrics {
+	
+	/**
+	 * Timed parts of the export
+	 */
+	public enum Phase {
+		DISCOVERY,
+		HIERARCHY,
+		JAVADOC,
+		FIELD_VALUES,
+		EXTRACTION,
+		OUTPUT,
+		PUBLISH
+	}
+	
+	/**
+	 * Counted events of the export
+	 */
+	public enum Counter {
+		TYPES_SCANNED,
+		TYPES_EXPORTED,
+		PAGES_SKIPPED,
+		MEMBERS_VISITED,
+		HIERARCHY_HITS,
+		HIERARCHY_MISSES,
+		JAVADOC_HITS,
+		JAVADOC_MISSES,
+		FIELD_UNIT_HITS,
+		FIELD_UNIT_MISSES,
+		MEMBER_CACHE_HITS,
+		MEMBER_CACHE_MISSES,
+		FRAGMENT_HITS,
+		FRAGMENT_MISSES,
+		PAGES_PUBLISHED,
+		API_REQUESTS
+	}
+	
+	private static final Method ALLOCATED_BYTES = findAllocatedBytesMethod();
+	
+	private AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+	private AtomicLongArray allocations = new AtomicLongArray(Phase.values().length);
+	private AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+	private final long startTime = System.currentTimeMillis();
+	
+	/**
+	 * Adds the time elapsed since the start
+	 * @param phase
+	 * 			The timed phase
+	 * @param startNanos
+	 * 			<code>System.nanoTime()</code> when the phase started
+	 */
+	public void addTime(Phase phase, long startNanos) {
+		nanos.addAndGet(phase.ordinal(), System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Adds the bytes allocated by the current thread since the start
+	 * @param phase
+	 * 			The measured phase
+	 * @param startBytes
+	 * 			<code>allocatedBytes()</code> when the phase started
+	 */
+	public void addAllocation(Phase phase, long startBytes) {
+		if (startBytes >= 0) {
+			allocations.addAndGet(phase.ordinal(), allocatedBytes() - startBytes);
+		}
+	}
+	
+	/**
+	 * Increments a counter
+	 * @param counter
+	 * 			The counter
+	 */
+	public void increment(Counter counter) {
+		counters.incrementAndGet(counter.ordinal());
+	}
+	
+	/**
+	 * Adds to a counter
+	 * @param counter
+	 * 			The counter
+	 * @param delta
+	 * 			The added value
+	 */
+	public void add(Counter counter, long delta) {
+		counters.addAndGet(counter.ordinal(), delta);
+	}
+	
+	public long getNanos(Phase phase) {
+		return nanos.get(phase.ordinal());
+	}
+	
+	public long getAllocation(Phase phase) {
+		return allocations.get(phase.ordinal());
+	}
+	
+	public long getCount(Counter counter) {
+		return counters.get(counter.ordinal());
+	}
+	
+	/**
+	 * Returns the bytes allocated so far by the current thread
+	 * @return
+	 * 			long or -1 if the JVM does not tell
+	 */
+	public static long allocatedBytes() {
+		if (ALLOCATED_BYTES == null) {
+			return -1;
+		}
+		try {
+			Object bytes = ALLOCATED_BYTES.invoke(ManagementFactory.getThreadMXBean(),
+					new Object[] {Long.valueOf(Thread.currentThread().getId())});
+			return ((Long)bytes).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+	
+	private static Method findAllocatedBytesMethod() {
+		try {
+			Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+			if (!beanClass.isInstance(ManagementFactory.getThreadMXBean())) {
+				return null;
+			}
+			return beanClass.getMethod("getThreadAllocatedBytes", new Class<?>[] {long.class});
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns a readable summary, one line per phase and counter.
+	 * The phase times are summed over all the threads.
+	 * @return
+	 * 			String
+	 */
+	public String toSummary() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("Export metrics (").append(System.currentTimeMillis() - startTime).append(" ms elapsed)\n");
+		for (Phase phase: Phase.values()) {
+			buf.append("  ").append(phase.name().toLowerCase()).append(": ")
+				.append(getNanos(phase) / 1000000).append(" ms");
+			if (ALLOCATED_BYTES != null) {
+				buf.append(", ").append(getAllocation(phase) / 1024).append(" KB allocated");
+			}
+			buf.append('\n');
+		}
+		for (Counter counter: Counter.values()) {
+			buf.append("  ").append(counter.name().toLowerCase()).append(": ")
+				.append(getCount(counter)).append('\n');
+		}
+		return buf.toString();
+	}
+	
+	/**
+	 * Returns the values as a JSON object
+	 * @return
+	 * 			String
+	 */
+	public String toJson() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("{\n  \"elapsedMillis\": ").append(System.currentTimeMillis() - startTime).append(",\n");
+		buf.append("  \"phases\": {");
+		for (Phase phase: Phase.values()) {
+			buf.append(phase.ordinal() == 0 ? "\n" : ",\n");
+			buf.append("    \"").append(phase.name().toLowerCase()).append("\": {\"nanos\": ")
+				.append(getNanos(phase)).append(", \"allocatedBytes\": ")
+				.append(ALLOCATED_BYTES == null ? -1 : getAllocation(phase)).append('}');
+		}
+		buf.append("\n  },\n  \"counters\": {");
+		for (Counter counter: Counter.values()) {
+			buf.append(counter.ordinal() == 0 ? "\n" : ",\n");
+			buf.append("    \"").append(counter.name().toLowerCase()).append("\": ").append(getCount(counter));
+		}
+		buf.append("\n  }\n}\n");
+		return buf.toString();
+	}
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+/**
+ * Finds the initial value of the fields. Every compilation unit (or class file
+ * with attached source) is parsed once and all its field initializers are kept
+ * in a map. The least recently used units are evicted, and the units that
+ * changed are dropped.
+ */
+public class FieldInitializerExtractor implements IElementChangedListener {
+	
+	private static final int MAX_UNITS = 200;
+	
+	// Initializers by "type qualified name#field name", per unit
+	private LinkedHashMap<String, FutureTask<Map<String, String>>> units =
+		new LinkedHashMap<String, FutureTask<Map<String, String>>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, FutureTask<Map<String, String>>> eldest) {
+				return size() > MAX_UNITS;
+			}
+		};
+	
+	/**
+	 * Returns the source of the field initializer
+	 * @param field
+	 * 			The field
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @return
+	 * 			String or null if the field has no initializer or no source
+	 * @throws JavaModelException
+	 */
+	public String getInitializer(IField field, ExportMetrics metrics) throws JavaModelException {
+		final ITypeRoot root = field.getTypeRoot();
+		if (root == null) {
+			return null;
+		}
+		String key = root.getHandleIdentifier() + "@" + JavaModelUtils.getModificationStamp(field);
+		
+		// The unit is parsed by the first thread asking for it
+		FutureTask<Map<String, String>> task;
+		boolean created = false;
+		synchronized (this) {
+			task = units.get(key);
+			if (task == null) {
+				task = new FutureTask<Map<String, String>>(new Callable<Map<String, String>>() {
+					public Map<String, String> call() throws Exception {
+						return parse(root);
+					}
+				});
+				units.put(key, task);
+				created = true;
+			}
+		}
+		if (created) {
+			metrics.increment(ExportMetrics.Counter.FIELD_UNIT_MISSES);
+			long start = System.nanoTime();
+			task.run();
+			metrics.addTime(ExportMetrics.Phase.FIELD_VALUES, start);
+		} else {
+			metrics.increment(ExportMetrics.Counter.FIELD_UNIT_HITS);
+		}
+		
+		Map<String, String> initializers;
+		try {
+			initializers = task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			synchronized (this) {
+				units.remove(key);
+			}
+			if (e.getCause() instanceof JavaModelException) {
+				throw (JavaModelException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		return initializers.get(field.getDeclaringType().getTypeQualifiedName('.') + "#" + field.getElementName());
+	}
+	
+	/**
+	 * Collects all the field initializers of the unit
+	 */
+	private static Map<String, String> parse(ITypeRoot root) throws JavaModelException {
+		final HashMap<String, String> initializers = new HashMap<String, String>();
+		final String source = root.getSource();
+		if (source == null) {
+			return initializers;
+		}
+		
+		ASTParser parser = ASTParser.newParser(AST.JLS_Latest);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setSource(root);
+		parser.setResolveBindings(false);
+		CompilationUnit unit = (CompilationUnit)parser.createAST(null);
+		
+		unit.accept(new ASTVisitor() {
+			public boolean visit(AnonymousClassDeclaration node) {
+				return false;
+			}
+			
+			public boolean visit(FieldDeclaration node) {
+				String typeName = getTypeQualifiedName(node);
+				if (typeName == null) {
+					return false;
+				}
+				for (Object object: node.fragments()) {
+					VariableDeclarationFragment fragment = (VariableDeclarationFragment)object;
+					Expression initializer = fragment.getInitializer();
+					if (initializer != null) {
+						String text = source.substring(initializer.getStartPosition(),
+								initializer.getStartPosition() + initializer.getLength());
+						initializers.put(typeName + "#" + fragment.getName().getIdentifier(), collapseLines(text));
+					}
+				}
+				return false;
+			}
+		});
+		return initializers;
+	}
+	
+	/**
+	 * Returns the name of the type declaring the field, like "Outer.Inner",
+	 * or null for local types
+	 */
+	private static String getTypeQualifiedName(FieldDeclaration field) {
+		StringBuilder name = new StringBuilder();
+		ASTNode node = field.getParent();
+		while (node != null && !(node instanceof CompilationUnit)) {
+			if (!(node instanceof AbstractTypeDeclaration)) {
+				return null;
+			}
+			if (name.length() > 0) {
+				name.insert(0, '.');
+			}
+			name.insert(0, ((AbstractTypeDeclaration)node).getName().getIdentifier());
+			node = node.getParent();
+		}
+		return name.toString();
+	}
+	
+	/**
+	 * Puts a multi line initializer on one line. The white space of the string
+	 * and char literals is kept, the comments are dropped.
+	 */
+	private static String collapseLines(String text) {
+		if (text.indexOf('\n') == -1 && text.indexOf('\r') == -1) {
+			return text;
+		}
+		StringBuilder buf = new StringBuilder(text.length());
+		boolean blank = false;
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			char c = text.charAt(i);
+			if (Character.isWhitespace(c)) {
+				blank = true;
+				i++;
+				continue;
+			}
+			if (text.startsWith("//", i)) {
+				blank = true;
+				while (i < length && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+					i++;
+				}
+				continue;
+			}
+			if (text.startsWith("/*", i)) {
+				blank = true;
+				int end = text.indexOf("*/", i + 2);
+				i = end == -1 ? length : end + 2;
+				continue;
+			}
+			if (blank && buf.length() > 0) {
+				buf.append(' ');
+			}
+			blank = false;
+			int end = i + 1;
+			if (text.startsWith("\"\"\"", i)) {
+				// A text block, its lines are part of the value
+				end = text.indexOf("\"\"\"", i + 3);
+				end = end == -1 ? length : end + 3;
+			} else if (c == '"' || c == '\'') {
+				while (end < length && text.charAt(end) != c) {
+					end += text.charAt(end) == '\\' ? 2 : 1;
+				}
+				end = Math.min(end + 1, length);
+			}
+			buf.append(text, i, end);
+			i = end;
+		}
+		return buf.toString();
+	}
+	
+	/**
+	 * Removes all the units
+	 */
+	public synchronized void clear() {
+		units.clear();
+	}
+
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		ArrayList<ICompilationUnit> changedUnits = new ArrayList<ICompilationUnit>();
+		if (!JavaModelUtils.collectChangedUnits(event.getDelta(), changedUnits)) {
+			clear();
+			return;
+		}
+		if (changedUnits.isEmpty()) {
+			return;
+		}
+		
+		String[] prefixes = new String[changedUnits.size()];
+		for (int i = 0; i < prefixes.length; i++) {
+			prefixes[i] = changedUnits.get(i).getHandleIdentifier() + "@";
+		}
+		
+		synchronized (this) {
+			Iterator<String> iterator = units.keySet().iterator();
+			while (iterator.hasNext()) {
+				String key = iterator.next();
+				for (String prefix: prefixes) {
+					if (key.startsWith(prefix)) {
+						iterator.remove();
+						break;
+					}
+				}
+			}
+		}
+	}
+}
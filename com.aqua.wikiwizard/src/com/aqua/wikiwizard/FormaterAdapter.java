@@ -0,0 +1,161 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.IOException;
+
+/**
+ * Makes a string returning <code>Formater</code> usable where an
+ * <code>AppendableFormater</code> is needed.
+ */
+public class FormaterAdapter implements AppendableFormater {
+	
+	private Formater formater;
+	
+	private FormaterAdapter(Formater formater) {
+		this.formater = formater;
+	}
+	
+	/**
+	 * Returns the formater itself if it already appends, otherwise an adapter
+	 * @param formater
+	 * 			Any formater
+	 * @return
+	 * 			AppendableFormater
+	 */
+	public static AppendableFormater adapt(Formater formater) {
+		if (formater instanceof AppendableFormater) {
+			return (AppendableFormater)formater;
+		}
+		return new FormaterAdapter(formater);
+	}
+	
+	/**
+	 * Returns the class of the adapted formater
+	 * @return
+	 * 			Class
+	 */
+	Class<?> getAdaptedClass() {
+		return formater.getClass();
+	}
+
+	@Override
+	public String h1(String header) {
+		return formater.h1(header);
+	}
+
+	@Override
+	public String h2(String header) {
+		return formater.h2(header);
+	}
+
+	@Override
+	public String h3(String header) {
+		return formater.h3(header);
+	}
+
+	@Override
+	public String h4(String header) {
+		return formater.h4(header);
+	}
+
+	@Override
+	public String bold(String text) {
+		return formater.bold(text);
+	}
+
+	@Override
+	public String tab() {
+		return formater.tab();
+	}
+
+	@Override
+	public String lineBreak() {
+		return formater.lineBreak();
+	}
+
+	@Override
+	public String formatText(String text) {
+		return formater.formatText(text);
+	}
+
+	@Override
+	public String link(String link, String title) {
+		return formater.link(link, title);
+	}
+
+	@Override
+	public String bullet() {
+		return formater.bullet();
+	}
+
+	@Override
+	public void h1(Appendable out, String header) throws IOException {
+		out.append(formater.h1(header));
+	}
+
+	@Override
+	public void h2(Appendable out, String header) throws IOException {
+		out.append(formater.h2(header));
+	}
+
+	@Override
+	public void h3(Appendable out, String header) throws IOException {
+		out.append(formater.h3(header));
+	}
+
+	@Override
+	public void h4(Appendable out, String header) throws IOException {
+		out.append(formater.h4(header));
+	}
+
+	@Override
+	public void bold(Appendable out, String text) throws IOException {
+		out.append(formater.bold(text));
+	}
+
+	@Override
+	public void tab(Appendable out) throws IOException {
+		out.append(formater.tab());
+	}
+
+	@Override
+	public void lineBreak(Appendable out) throws IOException {
+		out.append(formater.lineBreak());
+	}
+
+	@Override
+	public void formatText(Appendable out, String text) throws IOException {
+		out.append(formater.formatText(text));
+	}
+
+	@Override
+	public void code(Appendable out, String text) throws IOException {
+		// The string formaters have no escaping of their own
+		out.append(formater.formatText(text));
+	}
+
+	@Override
+	public void link(Appendable out, String link, String title) throws IOException {
+		out.append(formater.link(link, title));
+	}
+
+	@Override
+	public void bullet(Appendable out) throws IOException {
+		out.append(formater.bullet());
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+
+/**
+ * Finds only the source subclasses of a base type (SystemObjectImpl by default)
+ * using a single type hierarchy computation.
+ */
+public class HierarchyDiscovery implements TypeDiscovery {
+	
+	private String baseTypeName;
+	
+	/**
+	 * @param baseTypeName
+	 * 			Fully qualified name of the base type
+	 */
+	public HierarchyDiscovery(String baseTypeName) {
+		this.baseTypeName = baseTypeName;
+	}
+
+	@Override
+	public void discover(TypeDiscoveryListener listener, IProgressMonitor monitor) throws CoreException {
+		SubMonitor progress = SubMonitor.convert(monitor, "Searching for subclasses of " + baseTypeName, 100);
+		
+		IType baseType = findBaseType();
+		if (baseType == null) {
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+					baseTypeName + " was not found in the workspace"));
+		}
+		progress.worked(5);
+		
+		// The hierarchy covers the subtypes in the whole workspace
+		ITypeHierarchy hierarchy = baseType.newTypeHierarchy(progress.split(90));
+		if (progress.isCanceled()) {
+			return;
+		}
+		
+		IType[] subtypes = hierarchy.getAllSubtypes(baseType);
+		ArrayList<TypeEntry> entries = new ArrayList<TypeEntry>(subtypes.length);
+		for (IType type: subtypes) {
+			// Skip the jars and the inner, local and anonymous types
+			if (type.isReadOnly() || type.getDeclaringType() != null) {
+				continue;
+			}
+			entries.add(new TypeEntry(type));
+		}
+		if (!entries.isEmpty()) {
+			listener.typesFound(entries);
+		}
+		progress.done();
+	}
+	
+	private IType findBaseType() throws CoreException {
+		for (IJavaProject proj: WikiExportModel.getJavaProjects()) {
+			IType type = proj.findType(baseTypeName);
+			if (type != null && type.exists()) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.IOException;
+
+/**
+ * HTML formater. The documentation is written as is since the javadoc
+ * is already HTML, the headers, the code and the links are escaped.
+ */
+public class HtmlFormater extends AbstractFormater {
+
+	@Override
+	public void formatText(Appendable out, String text) throws IOException {
+		out.append(text == null ? "N/A" : text);
+	}
+
+	@Override
+	public void code(Appendable out, String text) throws IOException {
+		out.append("<code>");
+		escape(out, text == null ? "N/A" : text);
+		out.append("</code>");
+	}
+
+	@Override
+	public void h1(Appendable out, String header) throws IOException {
+		header(out, "h1", header);
+	}
+
+	@Override
+	public void h2(Appendable out, String header) throws IOException {
+		header(out, "h2", header);
+	}
+
+	@Override
+	public void h3(Appendable out, String header) throws IOException {
+		header(out, "h3", header);
+	}
+
+	@Override
+	public void h4(Appendable out, String header) throws IOException {
+		header(out, "h4", header);
+	}
+	
+	private void header(Appendable out, String tag, String header) throws IOException {
+		out.append('<').append(tag).append('>');
+		escape(out, header == null ? "N/A" : header);
+		out.append("</").append(tag).append(">\n");
+	}
+
+	@Override
+	public void lineBreak(Appendable out) throws IOException {
+		out.append("<br />\n");
+	}
+
+	@Override
+	public void bold(Appendable out, String text) throws IOException {
+		out.append("<b>");
+		escape(out, text == null ? "N/A" : text);
+		out.append("</b>");
+	}
+
+	@Override
+	public void tab(Appendable out) throws IOException {
+		out.append("&nbsp;&nbsp;&nbsp;&nbsp;");
+	}
+
+	@Override
+	public void bullet(Appendable out) throws IOException {
+		out.append("&bull; ");
+	}
+
+	@Override
+	public void link(Appendable out, String link, String title) throws IOException {
+		out.append(" <a href=\"");
+		escape(out, link + ExportFormat.HTML.getExtension());
+		out.append("\">");
+		escape(out, title);
+		out.append("</a>");
+	}
+}
@@ -16,11 +16,16 @@
 
 package com.aqua.wikiwizard;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
+import org.eclipse.core.resources.IResource;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
 import org.eclipse.jdt.core.IMember;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
@@ -53,33 +58,73 @@ public class JavaModelUtils {
 	 * Returns the javadoc for given type. Performs some cleaning on the javadoc
 	 * @param member
 	 * 			The given type
+	 * @param metrics
+	 * 			The metrics of the run
 	 * @return
 	 * 			String
 	 * @throws JavaModelException
 	 */
-	public static String getJavaDoc(IMember member) throws JavaModelException{
+	public static String getJavaDoc(IMember member, ExportMetrics metrics) throws JavaModelException{
+		return Activator.getPlugin().getJavadocCache().getJavaDoc(member, metrics);
+	}
+	
+	/**
+	 * Reads and cleans the javadoc, without using the cache
+	 */
+	static String readJavaDoc(IMember member) throws JavaModelException{
 		String doc = JavadocContentAccess2.getHTMLContent(member, true, true);
 		
 		if (doc == null) {
 			return null;
 		}
 		
-		// Change to \n
-		String[] lines = doc.split("\r\n|\r|\n");
-		StringBuffer buf = new StringBuffer();
-		for (String line: lines) {
-			buf.append(line.trim());
-			buf.append("\n");
+		return JavadocSanitizer.sanitize(doc);
+	}
+	
+	/**
+	 * Returns true if the javadoc of the member may come from a supertype
+	 * declared in another unit: a source method without javadoc or with
+	 * <code>{@inheritDoc}</code>
+	 */
+	static boolean mayInheritJavaDoc(IMember member) throws JavaModelException {
+		if (!(member instanceof IMethod) || member.isBinary()) {
+			return false;
 		}
-		
-		// Remove all the links from the doc
-		String newDoc = buf.toString();
-		Matcher m = Pattern.compile("\\<a.*\\>(\\S+)\\</a\\>").matcher(newDoc);
-		if (m.find()) {
-			newDoc = m.replaceAll(m.group(1));
-		}		
-
-		return newDoc;		
+		ISourceRange range = member.getJavadocRange();
+		if (range == null) {
+			return true;
+		}
+		String source = member.getCompilationUnit().getSource();
+		return source == null || source.substring(range.getOffset(), range.getOffset() + range.getLength())
+				.indexOf("{@inheritDoc}") != -1;
+	}
+	
+	/**
+	 * Resolves a type name found in the declaration of a type, like its
+	 * superclass or interfaces, without computing a hierarchy
+	 * @param type
+	 * 			The declaring type
+	 * @param name
+	 * 			The name as written, may have type arguments
+	 * @return
+	 * 			IType or null if it can't be resolved
+	 * @throws JavaModelException
+	 */
+	static IType findReferencedType(IType type, String name) throws JavaModelException {
+		name = Signature.getTypeErasure(name);
+		String fullName = null;
+		if (type.isBinary()) {
+			fullName = name;
+		} else {
+			String[][] rt = type.resolveType(name);
+			if (rt != null && rt.length == 1 && rt[0] != null && rt[0].length == 2) {
+				fullName = rt[0][0].length() == 0 ? rt[0][1] : rt[0][0] + "." + rt[0][1];
+			}
+		}
+		if (fullName == null) {
+			return null;
+		}
+		return type.getJavaProject().findType(fullName);
 	}
 	
 	/**
@@ -95,4 +140,69 @@ public class JavaModelUtils {
 		String packageName = Signature.getSignatureQualifier(signature);
 		return (packageName.trim().equals("")?"":packageName+".") + Signature.getSignatureSimpleName(signature);
 	}
+
+	/**
+	 * Returns the modification stamp of the compilation unit of the member,
+	 * or of its jar or class folder for a binary member
+	 * @param member
+	 * 			The member
+	 * @return
+	 * 			The stamp or IResource.NULL_STAMP
+	 */
+	public static long getModificationStamp(IMember member) {
+		ICompilationUnit unit = member.getCompilationUnit();
+		if (unit != null) {
+			IResource resource = unit.getResource();
+			return resource == null ? IResource.NULL_STAMP : resource.getModificationStamp();
+		}
+		
+		// Binary member, use the jar or class folder
+		IPackageFragmentRoot root = (IPackageFragmentRoot)member.getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+		if (root == null) {
+			return IResource.NULL_STAMP;
+		}
+		if (root.getResource() != null) {
+			return root.getResource().getModificationStamp();
+		}
+		return root.getPath().toFile().lastModified();
+	}
+	
+	/**
+	 * Collects the primary compilation units changed by the delta
+	 * @return
+	 * 			false if the change is too coarse and everything should be dropped
+	 */
+	static boolean collectChangedUnits(IJavaElementDelta delta, List<ICompilationUnit> units) {
+		IJavaElement element = delta.getElement();
+		
+		switch (element.getElementType()) {
+		case IJavaElement.JAVA_MODEL:
+			break;
+		case IJavaElement.JAVA_PROJECT:
+		case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+		case IJavaElement.PACKAGE_FRAGMENT:
+			if (delta.getKind() != IJavaElementDelta.CHANGED
+					|| (delta.getFlags() & (IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED
+							| IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_ADDED_TO_CLASSPATH
+							| IJavaElementDelta.F_REMOVED_FROM_CLASSPATH | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED)) != 0) {
+				return false;
+			}
+			break;
+		case IJavaElement.COMPILATION_UNIT:
+			ICompilationUnit unit = (ICompilationUnit)element;
+			if (unit.getOwner() == null) {
+				units.add(unit);
+			}
+			return true;
+		default:
+			return true;
+		}
+		
+		for (IJavaElementDelta child: delta.getAffectedChildren()) {
+			if (!collectChangedUnits(child, units)) {
+				return false;
+			}
+		}
+		return true;
+	}
 }
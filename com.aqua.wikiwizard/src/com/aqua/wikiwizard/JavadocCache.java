@@ -0,0 +1,139 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Cache of the cleaned javadoc of the members. The key is the member handle
+ * identifier and the modification stamp of its compilation unit (or jar), so
+ * an inherited member is parsed once for all its subclasses. The least recently
+ * used entries are evicted, and the entries of a changed compilation unit are dropped.
+ * The javadoc of a source method may be inherited from a supertype in another
+ * unit, so those entries are dropped whenever any compilation unit changes.
+ */
+public class JavadocCache implements IElementChangedListener {
+	
+	private static final int MAX_ENTRIES = 5000;
+	
+	/**
+	 * A cached javadoc, null if the member has none
+	 */
+	private static class Doc {
+		final String text;
+		final boolean inherited;
+		
+		Doc(String text, boolean inherited) {
+			this.text = text;
+			this.inherited = inherited;
+		}
+	}
+	
+	private LinkedHashMap<String, Doc> docs = new LinkedHashMap<String, Doc>(256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Doc> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	
+	/**
+	 * Returns the cleaned javadoc of the member
+	 * @param member
+	 * 			The member
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @return
+	 * 			String or null if there is no javadoc
+	 * @throws JavaModelException
+	 */
+	public String getJavaDoc(IMember member, ExportMetrics metrics) throws JavaModelException {
+		String key = member.getHandleIdentifier() + "@" + JavaModelUtils.getModificationStamp(member);
+		
+		Doc doc;
+		synchronized (this) {
+			doc = docs.get(key);
+		}
+		if (doc == null) {
+			metrics.increment(ExportMetrics.Counter.JAVADOC_MISSES);
+			long start = System.nanoTime();
+			try {
+				doc = new Doc(JavaModelUtils.readJavaDoc(member), JavaModelUtils.mayInheritJavaDoc(member));
+			} finally {
+				metrics.addTime(ExportMetrics.Phase.JAVADOC, start);
+			}
+			synchronized (this) {
+				docs.put(key, doc);
+			}
+			return doc.text;
+		}
+		metrics.increment(ExportMetrics.Counter.JAVADOC_HITS);
+		return doc.text;
+	}
+	
+	/**
+	 * Removes all the entries
+	 */
+	public synchronized void clear() {
+		docs.clear();
+	}
+
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		ArrayList<ICompilationUnit> changedUnits = new ArrayList<ICompilationUnit>();
+		if (!JavaModelUtils.collectChangedUnits(event.getDelta(), changedUnits)) {
+			clear();
+			return;
+		}
+		if (changedUnits.isEmpty()) {
+			return;
+		}
+		
+		// The handle identifier of a member starts with the one of its unit
+		String[] prefixes = new String[changedUnits.size()];
+		for (int i = 0; i < prefixes.length; i++) {
+			prefixes[i] = changedUnits.get(i).getHandleIdentifier();
+		}
+		
+		synchronized (this) {
+			Iterator<Map.Entry<String, Doc>> iterator = docs.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, Doc> entry = iterator.next();
+				if (entry.getValue().inherited) {
+					iterator.remove();
+					continue;
+				}
+				String key = entry.getKey();
+				for (String prefix: prefixes) {
+					if (key.startsWith(prefix)) {
+						iterator.remove();
+						break;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+/**
+ * Cleans the HTML javadoc in a single pass: line endings are changed to \n,
+ * every line is trimmed and the anchors are removed, keeping their text.
+ */
+public class JavadocSanitizer {
+	
+	/**
+	 * Returns the cleaned javadoc
+	 * @param html
+	 * 			The HTML javadoc
+	 * @return
+	 * 			String ending with a single \n
+	 */
+	public static String sanitize(String html) {
+		int length = html.length();
+		StringBuilder out = new StringBuilder(length);
+		
+		// Length of the output up to the last non blank char of the line
+		int lineEnd = 0;
+		// True as long as only blanks were found on the line
+		boolean lineStart = true;
+		
+		int i = 0;
+		while (i < length) {
+			char c = html.charAt(i);
+			
+			if (c == '\r' || c == '\n') {
+				if (c == '\r' && i + 1 < length && html.charAt(i + 1) == '\n') {
+					i++;
+				}
+				// Drop the trailing blanks
+				out.setLength(lineEnd);
+				out.append('\n');
+				lineEnd = out.length();
+				lineStart = true;
+				i++;
+				continue;
+			}
+			
+			if (c == '<') {
+				int tagEnd = anchorTagEnd(html, i);
+				if (tagEnd != -1) {
+					i = tagEnd;
+					continue;
+				}
+			}
+			
+			if (c <= ' ') {
+				// Drop the leading blanks
+				if (!lineStart) {
+					out.append(c);
+				}
+			} else {
+				out.append(c);
+				lineEnd = out.length();
+				lineStart = false;
+			}
+			i++;
+		}
+		
+		// The empty lines at the end are dropped
+		int end = lineEnd;
+		while (end > 0 && out.charAt(end - 1) == '\n') {
+			end--;
+		}
+		out.setLength(end);
+		out.append('\n');
+		return out.toString();
+	}
+	
+	/**
+	 * Checks for an &lt;a ...&gt; or &lt;/a&gt; tag at the given index
+	 * @return
+	 * 			The index after the tag or -1 if there is no anchor tag there
+	 */
+	private static int anchorTagEnd(String html, int start) {
+		int length = html.length();
+		int i = start + 1;
+		if (i < length && html.charAt(i) == '/') {
+			i++;
+		}
+		if (i + 1 >= length || (html.charAt(i) != 'a' && html.charAt(i) != 'A')) {
+			return -1;
+		}
+		i++;
+		char c = html.charAt(i);
+		if (c != '>' && !Character.isWhitespace(c)) {
+			return -1;
+		}
+		
+		// Look for the end of the tag, the attribute values may contain '>'
+		char quote = 0;
+		for (; i < length; i++) {
+			c = html.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '>') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+}
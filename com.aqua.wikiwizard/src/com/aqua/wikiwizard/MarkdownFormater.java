@@ -0,0 +1,124 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.IOException;
+
+/**
+ * Markdown formater, the links point to the other pages of the export
+ */
+public class MarkdownFormater extends AbstractFormater {
+
+	@Override
+	public void formatText(Appendable out, String text) throws IOException {
+		out.append(text == null ? "N/A" : text);
+	}
+
+	@Override
+	public void code(Appendable out, String text) throws IOException {
+		if (text == null) {
+			out.append("N/A");
+			return;
+		}
+		// A code span is delimited by a longer run of backticks than it contains
+		int longest = 0;
+		int run = 0;
+		for (int i = 0; i < text.length(); i++) {
+			run = text.charAt(i) == '`' ? run + 1 : 0;
+			longest = Math.max(longest, run);
+		}
+		StringBuilder fence = new StringBuilder();
+		for (int i = 0; i <= longest; i++) {
+			fence.append('`');
+		}
+		// One space is stripped from both ends, it keeps a backtick off the fence
+		boolean padded = text.length() > 0 && (text.charAt(0) == '`' || text.charAt(text.length() - 1) == '`'
+				|| (text.charAt(0) == ' ' && text.charAt(text.length() - 1) == ' '));
+		out.append(fence);
+		if (padded) {
+			out.append(' ');
+		}
+		out.append(text);
+		if (padded) {
+			out.append(' ');
+		}
+		out.append(fence);
+	}
+
+	@Override
+	public void h1(Appendable out, String header) throws IOException {
+		out.append("# ");
+		formatText(out, header);
+		out.append("\n\n");
+	}
+
+	@Override
+	public void h2(Appendable out, String header) throws IOException {
+		out.append("\n## ");
+		formatText(out, header);
+		out.append("\n\n");
+	}
+
+	@Override
+	public void h3(Appendable out, String header) throws IOException {
+		out.append("\n### ");
+		formatText(out, header);
+		out.append("\n\n");
+	}
+
+	@Override
+	public void h4(Appendable out, String header) throws IOException {
+		out.append("\n#### ");
+		formatText(out, header);
+		out.append("\n\n");
+	}
+
+	@Override
+	public void lineBreak(Appendable out) throws IOException {
+		out.append("  \n");
+	}
+
+	@Override
+	public void bold(Appendable out, String text) throws IOException {
+		out.append("**");
+		formatText(out, text);
+		out.append("**");
+	}
+
+	@Override
+	public void tab(Appendable out) throws IOException {
+		out.append("&nbsp;&nbsp;&nbsp;&nbsp;");
+	}
+
+	@Override
+	public void bullet(Appendable out) throws IOException {
+		out.append("- ");
+	}
+
+	@Override
+	public void link(Appendable out, String link, String title) throws IOException {
+		out.append(" [");
+		for (int i = 0; i < title.length(); i++) {
+			char c = title.charAt(i);
+			if ("\\`*_[]<>".indexOf(c) != -1) {
+				out.append('\\');
+			}
+			out.append(c);
+		}
+		out.append("](").append(link).append(ExportFormat.MARKDOWN.getExtension()).append(")");
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaElement;
+
+/**
+ * Runs a <code>MediaWikiPublisher</code> in the background
+ */
+public class MediaWikiPublishJob extends Job {
+	
+	private MediaWikiPublisher publisher;
+	private List<IJavaElement> elements;
+	private ExportMetrics metrics;
+	
+	public MediaWikiPublishJob(MediaWikiPublisher publisher, List<IJavaElement> elements) {
+		super("Publishing system objects to wiki");
+		this.publisher = publisher;
+		this.elements = elements;
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		metrics = new ExportMetrics();
+		return publisher.publish(elements, metrics, monitor);
+	}
+	
+	/**
+	 * Returns the metrics of the last run
+	 * @return
+	 * 			ExportMetrics, null before the job runs
+	 */
+	public ExportMetrics getMetrics() {
+		return metrics;
+	}
+}
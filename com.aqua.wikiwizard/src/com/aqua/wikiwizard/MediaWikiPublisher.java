@@ -0,0 +1,589 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Publishes the system object pages to a wiki through the MediaWiki API
+ * (<code>api.php</code>). The pages are rendered in the wiki format, linked
+ * together, with an index page and a page per package.
+ * <p>
+ * The current revisions are asked by batches of titles and only the pages
+ * whose SHA-1 differs from the rendered text are edited. Batches and edits
+ * share a bounded number of connections.
+ * <p>
+ * All the requests are form posts answered with <code>format=xml</code>:
+ * <ul>
+ * <li><code>action=query&amp;meta=tokens&amp;type=login</code>, then <code>action=login</code>, when a user is set</li>
+ * <li><code>action=query&amp;meta=tokens</code> for the edit token</li>
+ * <li><code>action=query&amp;prop=revisions&amp;rvprop=sha1&amp;titles=A|B|...</code></li>
+ * <li><code>action=edit&amp;title=...&amp;text=...&amp;md5=...&amp;token=...</code></li>
+ * </ul>
+ * so any server answering them, like a local stub, can stand for the wiki.
+ * Does not depend on the UI.
+ */
+public class MediaWikiPublisher {
+	
+	// Most titles a query may ask for without the high limits right
+	public static final int TITLES_PER_REQUEST = 50;
+	
+	private static final String EDIT_SUMMARY = "Exported from the system object sources";
+	private static final String USER_AGENT = "com.aqua.wikiwizard";
+	private static final int TIMEOUT = 60000;
+	
+	private static final DocumentBuilderFactory FACTORY = DocumentBuilderFactory.newInstance();
+	
+	private WikiExportModel exportModel;
+	private URL apiUrl;
+	private int connections;
+	private String user;
+	private String password;
+	
+	// Session cookies, sent on all the connections
+	private ConcurrentHashMap<String, String> cookies = new ConcurrentHashMap<String, String>();
+	private volatile String editToken;
+	
+	// Metrics of the current run
+	private volatile ExportMetrics metrics;
+	
+	/**
+	 * A page to publish, rendered by the batch querying its revision
+	 */
+	private static class Page {
+		final String title;
+		final IType type;
+		String text;
+		boolean unchanged;
+		IStatus error;
+		
+		Page(String title, IType type, String text) {
+			this.title = title;
+			this.type = type;
+			this.text = text;
+		}
+	}
+	
+	/**
+	 * @param exportModel
+	 * 			The model reading the system objects
+	 * @param apiUrl
+	 * 			The API of the wiki, like <code>http://wiki/w/api.php</code>
+	 * @param connections
+	 * 			Maximum number of requests sent at once
+	 */
+	public MediaWikiPublisher(WikiExportModel exportModel, URL apiUrl, int connections) {
+		this.exportModel = exportModel;
+		this.apiUrl = apiUrl;
+		this.connections = Math.max(1, connections);
+	}
+	
+	/**
+	 * Sets the wiki account, the pages are edited anonymously if not set
+	 * @param user
+	 * 			The user name, may be a bot password name like <code>User@bot</code>
+	 * @param password
+	 * 			The password
+	 */
+	public void setCredentials(String user, String password) {
+		this.user = user;
+		this.password = password;
+	}
+	
+	/**
+	 * Publishes the pages of the given elements
+	 * @param elements
+	 * 			Types, compilation units, packages or projects
+	 * @param metrics
+	 * 			The metrics of this run
+	 * @param monitor
+	 * 			Progress monitor, the publishing stops when it is canceled
+	 * @return
+	 * 			A status with the failed pages, if any
+	 */
+	public IStatus publish(List<IJavaElement> elements, ExportMetrics metrics, IProgressMonitor monitor) {
+		this.metrics = metrics;
+		SubMonitor progress = SubMonitor.convert(monitor, "Publishing system objects", 100);
+		try {
+			List<IType> types;
+			try {
+				types = BatchExporter.collectTypes(elements, progress.split(5));
+			} catch (JavaModelException e) {
+				return e.getStatus();
+			}
+			return publishTypes(types, progress.split(95));
+		} catch (OperationCanceledException e) {
+			return Status.CANCEL_STATUS;
+		} finally {
+			monitor.done();
+		}
+	}
+	
+	/**
+	 * Publishes pages already rendered in the wiki format
+	 * @param pages
+	 * 			The text by page title
+	 * @param metrics
+	 * 			The metrics of this run
+	 * @param monitor
+	 * 			Progress monitor, the publishing stops when it is canceled
+	 * @return
+	 * 			A status with the failed pages, if any
+	 */
+	public IStatus publishPages(Map<String, String> pages, ExportMetrics metrics, IProgressMonitor monitor) {
+		this.metrics = metrics;
+		ArrayList<Page> list = new ArrayList<Page>();
+		for (Map.Entry<String, String> page: pages.entrySet()) {
+			list.add(new Page(page.getKey(), null, page.getValue()));
+		}
+		return publishPages(list, null, null, monitor);
+	}
+	
+	/**
+	 * Renders the pages of the types with the index pages and publishes them
+	 */
+	private IStatus publishTypes(List<IType> types, IProgressMonitor monitor) {
+		SiteLinkIndex links = new SiteLinkIndex(types);
+		AppendableFormater formater = ExportFormat.WIKI.createFormater();
+		ArrayList<Page> pages = new ArrayList<Page>();
+		try {
+			StringBuilder buf = new StringBuilder();
+			links.writeIndexPage(formater, buf);
+			pages.add(new Page(SiteLinkIndex.INDEX_PAGE, null, buf.toString()));
+			for (String packageName: links.getPackages()) {
+				buf = new StringBuilder();
+				links.writePackagePage(formater, buf, packageName);
+				pages.add(new Page(SiteLinkIndex.getPackagePage(packageName), null, buf.toString()));
+			}
+		} catch (IOException e) {
+			// Not thrown by a StringBuilder
+			throw new IllegalStateException(e);
+		}
+		for (IType type: types) {
+			pages.add(new Page(type.getFullyQualifiedName(), type, null));
+		}
+		return publishPages(pages, formater, links, monitor);
+	}
+	
+	/**
+	 * Checks the revisions batch by batch and edits the changed pages.
+	 * The pages of types are rendered by their batch.
+	 */
+	private IStatus publishPages(List<Page> pages, final AppendableFormater formater, final SiteLinkIndex links,
+			IProgressMonitor monitor) {
+		MultiStatus result = new MultiStatus(Activator.PLUGIN_ID, IStatus.OK,
+				"Some of the system objects were not published", null);
+		monitor.beginTask("Publishing system objects", pages.size());
+		
+		try {
+			monitor.subTask("Logging in to " + apiUrl);
+			login();
+		} catch (IOException e) {
+			result.add(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to log in to " + apiUrl, e));
+			monitor.done();
+			return result;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(connections);
+		CompletionService<List<Page>> batches = new ExecutorCompletionService<List<Page>>(executor);
+		CompletionService<IStatus> edits = new ExecutorCompletionService<IStatus>(executor);
+		try {
+			int pendingBatches = 0;
+			for (int i = 0; i < pages.size(); i += TITLES_PER_REQUEST) {
+				final List<Page> batch = pages.subList(i, Math.min(i + TITLES_PER_REQUEST, pages.size()));
+				batches.submit(new Callable<List<Page>>() {
+					public List<Page> call() {
+						checkBatch(batch, formater, links);
+						return batch;
+					}
+				});
+				pendingBatches++;
+			}
+			
+			// The edits of a batch start as soon as its revisions are known.
+			// The monitor is only used from this thread.
+			int pendingEdits = 0;
+			while (pendingBatches > 0 || pendingEdits > 0) {
+				if (monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				Future<List<Page>> checked = pendingBatches > 0 ? batches.poll(100, TimeUnit.MILLISECONDS) : null;
+				if (checked != null) {
+					pendingBatches--;
+					for (final Page page: checked.get()) {
+						if (page.error != null) {
+							result.add(page.error);
+							monitor.worked(1);
+						} else if (page.unchanged) {
+							metrics.increment(ExportMetrics.Counter.PAGES_SKIPPED);
+							monitor.worked(1);
+						} else {
+							edits.submit(new Callable<IStatus>() {
+								public IStatus call() {
+									return edit(page);
+								}
+							});
+							pendingEdits++;
+						}
+					}
+				}
+				Future<IStatus> edited = pendingBatches > 0 ? edits.poll() : edits.poll(100, TimeUnit.MILLISECONDS);
+				if (edited != null) {
+					pendingEdits--;
+					IStatus status = edited.get();
+					if (status.isOK()) {
+						monitor.subTask(status.getMessage());
+					} else {
+						result.add(status);
+					}
+					monitor.worked(1);
+				}
+			}
+		} catch (ExecutionException e) {
+			result.add(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Publishing failed", e.getCause()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Status.CANCEL_STATUS;
+		} finally {
+			executor.shutdownNow();
+			monitor.done();
+		}
+		return result;
+	}
+	
+	/**
+	 * Logs in if a user is set and gets the edit token
+	 */
+	private void login() throws IOException {
+		cookies.clear();
+		if (user != null && user.length() > 0) {
+			if (password == null) {
+				throw new IOException("No password given for " + user);
+			}
+			String loginToken = getAttribute(post("action", "query", "meta", "tokens", "type", "login"),
+					"tokens", "logintoken");
+			Element login = getElement(post("action", "login", "lgname", user, "lgpassword", password,
+					"lgtoken", loginToken), "login");
+			if (login == null || !"Success".equals(login.getAttribute("result"))) {
+				throw new IOException("Login as " + user + " failed"
+						+ (login == null ? "" : ": " + login.getAttribute("reason")));
+			}
+		}
+		editToken = getAttribute(post("action", "query", "meta", "tokens"), "tokens", "csrftoken");
+	}
+	
+	/**
+	 * Renders the pages of the batch and marks the ones the wiki already has
+	 */
+	private void checkBatch(List<Page> batch, AppendableFormater formater, SiteLinkIndex links) {
+		StringBuilder titles = new StringBuilder();
+		for (Page page: batch) {
+			if (page.text == null) {
+				try {
+					SystemObjectDocument document = exportModel.extractDocument(page.type, metrics);
+					long start = System.nanoTime();
+					StringBuilder buf = new StringBuilder();
+					document.write(formater, buf, links, metrics);
+					page.text = normalize(buf.toString());
+					metrics.addTime(ExportMetrics.Phase.OUTPUT, start);
+				} catch (Exception e) {
+					page.error = new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to export " + page.title, e);
+					continue;
+				}
+			} else {
+				page.text = normalize(page.text);
+			}
+			if (titles.length() > 0) {
+				titles.append('|');
+			}
+			titles.append(page.title);
+		}
+		if (titles.length() == 0) {
+			return;
+		}
+		
+		Map<String, String> hashes;
+		try {
+			hashes = getRevisionHashes(titles.toString());
+		} catch (IOException e) {
+			for (Page page: batch) {
+				if (page.error == null) {
+					page.error = new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+							"Failed to read the revision of " + page.title, e);
+				}
+			}
+			return;
+		}
+		for (Page page: batch) {
+			if (page.error == null) {
+				page.unchanged = digest("SHA-1", page.text).equalsIgnoreCase(hashes.get(page.title));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the SHA-1 of the last revision of the pages
+	 * @param titles
+	 * 			Page titles separated by '|'
+	 * @return
+	 * 			Map of the requested title to the hash, without the missing pages
+	 */
+	private Map<String, String> getRevisionHashes(String titles) throws IOException {
+		Document response = post("action", "query", "prop", "revisions", "rvprop", "sha1", "titles", titles);
+		
+		// The wiki answers with its own titles, like the first letter upper cased
+		HashMap<String, String> requested = new HashMap<String, String>();
+		NodeList normalized = response.getElementsByTagName("n");
+		for (int i = 0; i < normalized.getLength(); i++) {
+			Element n = (Element)normalized.item(i);
+			requested.put(n.getAttribute("to"), n.getAttribute("from"));
+		}
+		
+		HashMap<String, String> hashes = new HashMap<String, String>();
+		NodeList pages = response.getElementsByTagName("page");
+		for (int i = 0; i < pages.getLength(); i++) {
+			Element page = (Element)pages.item(i);
+			NodeList revisions = page.getElementsByTagName("rev");
+			if (revisions.getLength() == 0) {
+				continue;
+			}
+			String title = page.getAttribute("title");
+			if (requested.containsKey(title)) {
+				title = requested.get(title);
+			}
+			hashes.put(title, ((Element)revisions.item(0)).getAttribute("sha1"));
+		}
+		return hashes;
+	}
+	
+	/**
+	 * Saves a new revision of the page
+	 */
+	private IStatus edit(Page page) {
+		try {
+			// The token goes last so that a truncated post is rejected
+			Element edit = getElement(post("action", "edit", "title", page.title, "text", page.text,
+					"md5", digest("MD5", page.text), "summary", EDIT_SUMMARY, "token", editToken), "edit");
+			if (edit == null || !"Success".equals(edit.getAttribute("result"))) {
+				return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "The wiki rejected the edit of " + page.title);
+			}
+			metrics.increment(ExportMetrics.Counter.PAGES_PUBLISHED);
+			return new Status(IStatus.OK, Activator.PLUGIN_ID, page.title);
+		} catch (IOException e) {
+			return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to publish " + page.title, e);
+		} finally {
+			page.text = null;
+		}
+	}
+	
+	/**
+	 * Sends an API request
+	 * @param parameters
+	 * 			Names and values
+	 * @return
+	 * 			The response
+	 * @throws IOException
+	 * 			If the request failed or the wiki answered with an error
+	 */
+	private Document post(String... parameters) throws IOException {
+		metrics.increment(ExportMetrics.Counter.API_REQUESTS);
+		long start = System.nanoTime();
+		
+		StringBuilder body = new StringBuilder("format=xml");
+		for (int i = 0; i < parameters.length; i += 2) {
+			body.append('&').append(parameters[i]).append('=').append(URLEncoder.encode(parameters[i + 1], "UTF-8"));
+		}
+		byte[] bytes = body.toString().getBytes("UTF-8");
+		
+		// Not disconnected, so that the connection is kept alive for the next request
+		HttpURLConnection connection = (HttpURLConnection)apiUrl.openConnection();
+		try {
+			connection.setConnectTimeout(TIMEOUT);
+			connection.setReadTimeout(TIMEOUT);
+			connection.setDoOutput(true);
+			connection.setRequestMethod("POST");
+			connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+			connection.setRequestProperty("User-Agent", USER_AGENT);
+			String cookie = getCookieHeader();
+			if (cookie.length() > 0) {
+				connection.setRequestProperty("Cookie", cookie);
+			}
+			connection.setFixedLengthStreamingMode(bytes.length);
+			OutputStream out = connection.getOutputStream();
+			try {
+				out.write(bytes);
+			} finally {
+				out.close();
+			}
+			
+			int code = connection.getResponseCode();
+			if (code != HttpURLConnection.HTTP_OK) {
+				InputStream error = connection.getErrorStream();
+				if (error != null) {
+					error.close();
+				}
+				throw new IOException(apiUrl + " answered " + code + " " + connection.getResponseMessage());
+			}
+			keepCookies(connection);
+			
+			InputStream in = connection.getInputStream();
+			Document response;
+			try {
+				response = newDocumentBuilder().parse(in);
+			} catch (SAXException e) {
+				throw new IOException(apiUrl + " did not answer with an API response", e);
+			} finally {
+				in.close();
+			}
+			Element error = getElement(response, "error");
+			if (error != null) {
+				throw new IOException(error.getAttribute("code") + ": " + error.getAttribute("info"));
+			}
+			return response;
+		} finally {
+			metrics.addTime(ExportMetrics.Phase.PUBLISH, start);
+		}
+	}
+	
+	private String getCookieHeader() {
+		StringBuilder buf = new StringBuilder();
+		for (Map.Entry<String, String> entry: cookies.entrySet()) {
+			if (buf.length() > 0) {
+				buf.append("; ");
+			}
+			buf.append(entry.getKey()).append('=').append(entry.getValue());
+		}
+		return buf.toString();
+	}
+	
+	/**
+	 * Keeps the session cookies, the attributes are ignored
+	 */
+	private void keepCookies(HttpURLConnection connection) {
+		for (Map.Entry<String, List<String>> header: connection.getHeaderFields().entrySet()) {
+			if (!"Set-Cookie".equalsIgnoreCase(header.getKey())) {
+				continue;
+			}
+			for (String value: header.getValue()) {
+				int end = value.indexOf(';');
+				String pair = end == -1 ? value : value.substring(0, end);
+				int equals = pair.indexOf('=');
+				if (equals > 0) {
+					cookies.put(pair.substring(0, equals).trim(), pair.substring(equals + 1).trim());
+				}
+			}
+		}
+	}
+	
+	private static DocumentBuilder newDocumentBuilder() throws IOException {
+		// The factory is not thread safe
+		synchronized (FACTORY) {
+			try {
+				return FACTORY.newDocumentBuilder();
+			} catch (ParserConfigurationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the first element of the response with the given name
+	 */
+	private static Element getElement(Document response, String name) {
+		NodeList nodes = response.getElementsByTagName(name);
+		return nodes.getLength() == 0 ? null : (Element)nodes.item(0);
+	}
+	
+	private static String getAttribute(Document response, String name, String attribute) throws IOException {
+		Element element = getElement(response, name);
+		if (element == null || !element.hasAttribute(attribute)) {
+			throw new IOException(name + "." + attribute + " is missing from the response");
+		}
+		return element.getAttribute(attribute);
+	}
+	
+	/**
+	 * Returns the text as the wiki saves it, so that the hashes can be compared.
+	 * The wiki uses unix line ends and drops the trailing white space.
+	 */
+	private static String normalize(String text) {
+		text = text.replace("\r\n", "\n");
+		int end = text.length();
+		while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		return text.substring(0, end);
+	}
+	
+	/**
+	 * Returns the hash of the UTF-8 text in hex
+	 */
+	static String digest(String algorithm, String text) {
+		try {
+			byte[] hash = MessageDigest.getInstance(algorithm).digest(text.getBytes("UTF-8"));
+			StringBuilder buf = new StringBuilder(hash.length * 2);
+			for (byte b: hash) {
+				buf.append(Character.forDigit((b >> 4) & 0xF, 16));
+				buf.append(Character.forDigit(b & 0xF, 16));
+			}
+			return buf.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
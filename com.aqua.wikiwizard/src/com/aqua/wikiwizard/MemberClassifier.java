@@ -0,0 +1,108 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.IAnnotatable;
+import org.eclipse.jdt.core.IAnnotation;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Decides in one pass which fields and methods go to the wiki page.
+ * We need:
+ * 1. public members that don't have @ignorewiki annotation
+ * 2. private/protected members that have @addwiki annotation
+ */
+public class MemberClassifier {
+	
+	public static final String ADD_WIKI = "addwiki";
+	public static final String IGNORE_WIKI = "ignorewiki";
+	
+	/**
+	 * Visits every element once, reading its flags and annotations once
+	 * @param elements
+	 * 			The children of the system object and its superclasses
+	 * @return
+	 * 			The members to document
+	 * @throws JavaModelException
+	 */
+	public static ClassifiedMembers classify(IJavaElement[] elements) throws JavaModelException {
+		IField[] fields = new IField[elements.length];
+		int[] fieldFlags = new int[elements.length];
+		int fieldCount = 0;
+		IMethod[] methods = new IMethod[elements.length];
+		int[] methodFlags = new int[elements.length];
+		int methodCount = 0;
+		
+		for (IJavaElement element: elements) {
+			boolean isField = element instanceof IField;
+			if (!isField && !(element instanceof IMethod)) {
+				continue;
+			}
+			
+			IMember member = (IMember)element;
+			int flags = member.getFlags();
+			if (!isDocumented(member, flags)) {
+				continue;
+			}
+			
+			if (isField) {
+				fields[fieldCount] = (IField)member;
+				fieldFlags[fieldCount++] = flags;
+			} else {
+				methods[methodCount] = (IMethod)member;
+				methodFlags[methodCount++] = flags;
+			}
+		}
+		
+		ClassifiedMembers members = new ClassifiedMembers();
+		members.fields = new IField[fieldCount];
+		System.arraycopy(fields, 0, members.fields, 0, fieldCount);
+		members.fieldFlags = new int[fieldCount];
+		System.arraycopy(fieldFlags, 0, members.fieldFlags, 0, fieldCount);
+		members.methods = new IMethod[methodCount];
+		System.arraycopy(methods, 0, members.methods, 0, methodCount);
+		members.methodFlags = new int[methodCount];
+		System.arraycopy(methodFlags, 0, members.methodFlags, 0, methodCount);
+		return members;
+	}
+	
+	private static boolean isDocumented(IMember member, int flags) {
+		boolean addWiki = false;
+		boolean ignoreWiki = false;
+		try {
+			IAnnotation[] annotations = ((IAnnotatable)member).getAnnotations();
+			for (IAnnotation annotation: annotations) {
+				String name = annotation.getElementName();
+				if (name.equals(ADD_WIKI)) {
+					addWiki = true;
+				} else if (name.equals(IGNORE_WIKI)) {
+					ignoreWiki = true;
+				}
+			}
+		} catch (JavaModelException e) {}
+		
+		if (Flags.isPublic(flags)) {
+			return !ignoreWiki;
+		}
+		return addWiki;
+	}
+}
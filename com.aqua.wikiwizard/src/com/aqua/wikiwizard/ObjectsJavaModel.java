@@ -17,20 +17,20 @@
 package com.aqua.wikiwizard;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
-import org.eclipse.jdt.core.Flags;
-import org.eclipse.jdt.core.IAnnotatable;
-import org.eclipse.jdt.core.IAnnotation;
 import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMember;
 import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IType;
-import org.eclipse.jdt.core.ITypeHierarchy;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
 
@@ -41,40 +41,52 @@ import org.eclipse.jdt.core.Signature;
 public class ObjectsJavaModel  {
 	
 	private IType javaObject;
-	private IJavaElement[] allChildrens;
+	
+	// The documented superclasses, nearest first, then the type itself
+	private IType[] levels;
+	
+	private ExecutorService executor = null;
+	private ExportMetrics metrics;
 	
 	/**
 	 * Create an object from a given java type
 	 * @param javaObject
 	 * 			Any given java type
+	 * @param metrics
+	 * 			The metrics of the run
 	 * @throws Exception
 	 */
-	public ObjectsJavaModel(IType javaObject) throws Exception {
+	public ObjectsJavaModel(IType javaObject, ExportMetrics metrics) throws Exception {
 		this.javaObject = javaObject;
-
-		if (javaObject.getTypeQualifiedName().equals("Linux")) {
-			System.out.println("");
-		}
+		this.metrics = metrics;
 		
-		ITypeHierarchy hierarchy = javaObject.newTypeHierarchy(null);
-		IType[] superTypes = hierarchy.getAllSuperclasses(javaObject);
+		IType[] superTypes = Activator.getPlugin().getHierarchyCache().getAllSuperclasses(javaObject, metrics);
 		IType[] allTypes = new IType[superTypes.length + 1];
 		
 		// Create a new array and add this type to the end of the list
 		System.arraycopy(superTypes, 0, allTypes, 0, superTypes.length);		
 		allTypes[superTypes.length] = javaObject;
 		
-		ArrayList<IJavaElement> elements = new ArrayList<IJavaElement>();
+		ArrayList<IType> documented = new ArrayList<IType>();
 		
 		for (IType curObject: allTypes) {
 			// Don't need the actual SystemObjectImpl & Object fields
 			if (curObject.getElementName().equals("SystemObjectImpl") || curObject.getElementName().equals("Object")){
 				continue;
 			}
-			// Add all children of this type
-			elements.addAll(Arrays.asList(curObject.getChildren()));
+			documented.add(curObject);
+		}
+		levels = documented.toArray(new IType[documented.size()]);
+	}
+	
+	private static String getOverrideKey(IMember member) {
+		try {
+			String signature = member instanceof IMethod ? ((IMethod)member).getSignature() : null;
+			return SystemObjectSnapshot.Member.overrideKey(member.getElementName(), signature);
+		} catch (JavaModelException e) {
+			// Never dropped
+			return member.getHandleIdentifier();
 		}
-		allChildrens = elements.toArray(new IJavaElement[elements.size()]);
 	}
 
 	/**
@@ -114,7 +126,7 @@ public class ObjectsJavaModel  {
 	 * @throws Exception
 	 */
 	public String getSystemObjectJavaDoc() throws Exception {
-		return JavaModelUtils.getJavaDoc(javaObject);
+		return JavaModelUtils.getJavaDoc(javaObject, metrics);
 	}
 	
 	/**
@@ -187,38 +199,9 @@ public class ObjectsJavaModel  {
      * @throws Exception
      */
 	public Property[] findAllObjectMethods() throws Exception {
-		ArrayList<Property> propertiesList = new ArrayList<Property>();
-
-		for (IJavaElement element : allChildrens) {
-			if (element instanceof IMethod) {
-				IMethod method = (IMethod)element;
-				int flags = method.getFlags();
-				
-				boolean addWiki = true;
-
-				// We need:
-				// 1. public methods that don't have @ignorewiki annotation
-				// 2. private/protected methods that have @addwiki annotation
-				if (Flags.isPublic(flags)) {
-					if (isAnnotationFound(method, "ignorewiki")) {
-						addWiki = false;
-					}
-				} else if (!isAnnotationFound(method, "addwiki")) {
-					addWiki = false;
-				}
-				
-				if (addWiki) {
-					Property property = new Property();
-					
-					property.name = method.getElementName();
-					property.type = JavaModelUtils.getMethodReturnTypeFullName(method);
-					property.documentation = JavaModelUtils.getJavaDoc(method);
-					
-					propertiesList.add(property);
-				}
-			}
-		}
-		return propertiesList.toArray(new Property[propertiesList.size()]);
+		ArrayList<SystemObjectSnapshot.Member> methods = new ArrayList<SystemObjectSnapshot.Member>();
+		collectMembers(null, methods);
+		return toProperties(methods);
 	}
 	
     /**
@@ -228,70 +211,220 @@ public class ObjectsJavaModel  {
      * @throws Exception
      */
 	public Property[] findAllObjectFields() throws Exception {
-		ArrayList<Property> propertiesList = new ArrayList<Property>();
+		ArrayList<SystemObjectSnapshot.Member> fields = new ArrayList<SystemObjectSnapshot.Member>();
+		collectMembers(fields, null);
+		return toProperties(fields);
+	}
+	
+	/**
+	 * Reads everything documented about the object in one go
+	 * @return
+	 * 			SystemObjectSnapshot
+	 * @throws Exception
+	 */
+	public SystemObjectSnapshot createSnapshot() throws Exception {
+		ArrayList<SystemObjectSnapshot.Member> fields = new ArrayList<SystemObjectSnapshot.Member>();
+		ArrayList<SystemObjectSnapshot.Member> methods = new ArrayList<SystemObjectSnapshot.Member>();
+		String superClassFullName = getSuperClassFullName();
+		String superClassSimpleName = getSuperClassSimpleName();
+		String javadoc = getSystemObjectJavaDoc();
+		collectMembers(fields, methods);
+		return new SystemObjectSnapshot(getObjectName(), getShortName(),
+				superClassFullName, superClassSimpleName, javadoc,
+				fields.toArray(new SystemObjectSnapshot.Member[fields.size()]),
+				methods.toArray(new SystemObjectSnapshot.Member[methods.size()]));
+	}
+	
+	/**
+	 * Collects the kept members of all the levels, superclasses first.
+	 * The members of each level are read once and shared by all its subclasses.
+	 * @param fields
+	 * 			Where to add the fields, null to skip them
+	 * @param methods
+	 * 			Where to add the methods, null to skip them
+	 */
+	private void collectMembers(List<SystemObjectSnapshot.Member> fields,
+			List<SystemObjectSnapshot.Member> methods) throws Exception {
+		DeclaredMembersCache.Members[] declared = new DeclaredMembersCache.Members[levels.length];
+		for (int level = 0; level < levels.length; level++) {
+			declared[level] = getDeclaredMembers(level);
+		}
 		
-		for (IJavaElement element : allChildrens) {
-			if (element instanceof IField) {
-				IField field = (IField)element;
-				
-				int flags = field.getFlags();
-				boolean addWiki = true;
-
-				// We need:
-				// 1. public fields that don't have @ignorewiki annotation
-				// 2. private/protected fields that have @addwiki annotation
-				if (Flags.isPublic(flags)) {
-					if (isAnnotationFound(field, "ignorewiki")) {
-						addWiki = false;
+		// The most derived declaration wins: the type itself, then its superclasses nearest first.
+		// Every declaration counts, so an override marked @ignorewiki hides the superclass one.
+		boolean[][] keptFields = new boolean[levels.length][];
+		boolean[][] keptMethods = new boolean[levels.length][];
+		HashSet<String> overridden = new HashSet<String>();
+		int last = levels.length - 1;
+		if (last >= 0 && levels[last].equals(javaObject)) {
+			keptFields[last] = keep(declared[last].fields, overridden);
+			keptMethods[last] = keep(declared[last].methods, overridden);
+			Collections.addAll(overridden, declared[last].declarations);
+			last--;
+		}
+		for (int level = 0; level <= last; level++) {
+			keptFields[level] = keep(declared[level].fields, overridden);
+			keptMethods[level] = keep(declared[level].methods, overridden);
+			Collections.addAll(overridden, declared[level].declarations);
+		}
+		
+		for (int level = 0; level < levels.length; level++) {
+			if (fields != null) {
+				for (int i = 0; i < declared[level].fields.length; i++) {
+					if (keptFields[level][i]) {
+						fields.add(declared[level].fields[i]);
 					}
-				} else if (!isAnnotationFound(field, "addwiki")) {
-					addWiki = false;
 				}
-				
-				if (addWiki) {
-					Property property = new Property();
-					property.name = field.getElementName();
-					property.documentation = JavaModelUtils.getJavaDoc(field);
-					
-					String rawCode = field.getSource();
-					property.defaultValue = "N/A";
-					
-					// Try to get the initial value from the source code directly
-					if (rawCode != null) {
-						int equalsIndex = rawCode.lastIndexOf('=');						
-						if (equalsIndex != -1) {
-							Matcher m = Pattern.compile("=\\s*(\\S+)[\\s|\\;]").matcher(rawCode);
-							if (m.find(equalsIndex)) {
-								property.defaultValue = m.group(1);
-							}
-						}
-					}					
-										
-					String fieldType = field.getTypeSignature();
-					property.type = Signature.toString(fieldType);
-					
-					propertiesList.add(property);
+			}
+			if (methods != null) {
+				for (int i = 0; i < declared[level].methods.length; i++) {
+					if (keptMethods[level][i]) {
+						methods.add(declared[level].methods[i]);
+					}
 				}
 			}
 		}
-			
-		return propertiesList.toArray(new Property[propertiesList.size()]);
 	}
-		    
+	
 	/**
-	 * Check if annotation is found
+	 * Returns which of the members are not overridden (or hidden) by a more derived level
 	 */
-	private boolean isAnnotationFound(IAnnotatable type, String annotationName) {
-		IAnnotation annotations[];
-		try {
-			annotations = type.getAnnotations();
-			for (IAnnotation annotation : annotations) {
-				if (annotation.getElementName().equals(annotationName)) {
-					return true;
+	private static boolean[] keep(SystemObjectSnapshot.Member[] members, HashSet<String> overridden) {
+		boolean[] kept = new boolean[members.length];
+		for (int i = 0; i < members.length; i++) {
+			kept[i] = !overridden.contains(members[i].getOverrideKey());
+		}
+		return kept;
+	}
+	
+	/**
+	 * Returns all the documented members declared by a level, from the cache
+	 * when the level was already read for another subclass. The children of
+	 * the level are only read on a miss, the members and the declarations
+	 * then come from the same read.
+	 */
+	private DeclaredMembersCache.Members getDeclaredMembers(int level) throws Exception {
+		DeclaredMembersCache cache = Activator.getPlugin().getDeclaredMembersCache();
+		DeclaredMembersCache.Members declared = cache.get(levels[level]);
+		if (declared != null) {
+			metrics.increment(ExportMetrics.Counter.MEMBER_CACHE_HITS);
+			return declared;
+		}
+		metrics.increment(ExportMetrics.Counter.MEMBER_CACHE_MISSES);
+		
+		// Only the documented members are kept, but every declaration may override
+		ClassifiedMembers classified = MemberClassifier.classify(levels[level].getChildren());
+		ArrayList<String> declarations = new ArrayList<String>();
+		for (IField field: levels[level].getFields()) {
+			declarations.add(getOverrideKey(field));
+		}
+		for (IMethod method: levels[level].getMethods()) {
+			declarations.add(getOverrideKey(method));
+		}
+		boolean inheritsJavaDoc = false;
+		for (IMember method: classified.methods) {
+			if (JavaModelUtils.mayInheritJavaDoc(method)) {
+				inheritsJavaDoc = true;
+				break;
+			}
+		}
+		declared = new DeclaredMembersCache.Members(
+				createMembers(classified.fields, classified.fieldFlags),
+				createMembers(classified.methods, classified.methodFlags),
+				declarations.toArray(new String[declarations.size()]), inheritsJavaDoc);
+		cache.put(levels[level], declared);
+		return declared;
+	}
+	
+	/**
+	 * Sets the executor used to document the members in parallel.
+	 * When null (the default), the members are documented one at a time.
+	 * @param executor
+	 * 			A bounded executor, or null
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
+	private static Property[] toProperties(List<SystemObjectSnapshot.Member> members) {
+		Property[] properties = new Property[members.size()];
+		for (int i = 0; i < properties.length; i++) {
+			properties[i] = members.get(i).toProperty();
+		}
+		return properties;
+	}
+	
+	/**
+	 * Reads the members, in parallel if there is an executor.
+	 * The members are returned in the given order.
+	 */
+	private SystemObjectSnapshot.Member[] createMembers(final IMember[] members, final int[] flags) throws Exception {
+		SystemObjectSnapshot.Member[] result = new SystemObjectSnapshot.Member[members.length];
+		metrics.add(ExportMetrics.Counter.MEMBERS_VISITED, members.length);
+		
+		if (executor == null || members.length < 2) {
+			for (int i = 0; i < members.length; i++) {
+				result[i] = createMember(members[i], flags[i]);
+			}
+			return result;
+		}
+		
+		ArrayList<Future<SystemObjectSnapshot.Member>> futures =
+			new ArrayList<Future<SystemObjectSnapshot.Member>>(members.length);
+		for (int i = 0; i < members.length; i++) {
+			final int index = i;
+			futures.add(executor.submit(new Callable<SystemObjectSnapshot.Member>() {
+				public SystemObjectSnapshot.Member call() throws Exception {
+					// The caller only measures its own thread
+					long startBytes = ExportMetrics.allocatedBytes();
+					try {
+						return createMember(members[index], flags[index]);
+					} finally {
+						metrics.addAllocation(ExportMetrics.Phase.EXTRACTION, startBytes);
+					}
 				}
+			}));
+		}
+		try {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = futures.get(i).get();
+			}
+		} catch (ExecutionException e) {
+			for (Future<SystemObjectSnapshot.Member> future: futures) {
+				future.cancel(true);
 			}
-		} catch (JavaModelException e) {}
-				
-		return false;
+			if (e.getCause() instanceof Exception) {
+				throw (Exception)e.getCause();
+			}
+			throw e;
+		}
+		return result;
+	}
+	
+	private SystemObjectSnapshot.Member createMember(IMember member, int flags) throws Exception {
+		if (member instanceof IField) {
+			return createFieldMember((IField)member, flags);
+		}
+		return createMethodMember((IMethod)member, flags);
+	}
+	
+	private SystemObjectSnapshot.Member createMethodMember(IMethod method, int flags) throws Exception {
+		return new SystemObjectSnapshot.Member(method.getElementName(),
+				method.getDeclaringType().getFullyQualifiedName('.'), flags, method.getSignature(),
+				JavaModelUtils.getMethodReturnTypeFullName(method),
+				JavaModelUtils.getJavaDoc(method, metrics), null);
+	}
+	
+	private SystemObjectSnapshot.Member createFieldMember(IField field, int flags) throws Exception {
+		// The initial value as written in the source code
+		String defaultValue = Activator.getPlugin().getFieldInitializers().getInitializer(field, metrics);
+		if (defaultValue == null) {
+			defaultValue = "N/A";
+		}
+		
+		String fieldType = field.getTypeSignature();
+		return new SystemObjectSnapshot.Member(field.getElementName(),
+				field.getDeclaringType().getFullyQualifiedName('.'), flags, fieldType,
+				Signature.toString(fieldType), JavaModelUtils.getJavaDoc(field, metrics), defaultValue);
 	}
 }
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Finds the types by walking the children of every java project.
+ * This opens every compilation unit, but does not depend on the search
+ * indexes being up to date like <code>SearchEngineDiscovery</code>.
+ * <p>
+ * With more than one thread the source folders of all the projects are
+ * walked on a fork-join pool. The types of the folders are merged, sorted in
+ * <code>TypeEntry.NAME_ORDER</code> with a parallel sort and reported in a
+ * single batch, from the calling thread.
+ */
+public class ProjectWalkDiscovery implements TypeDiscovery {
+	
+	private int threads;
+	
+	/**
+	 * Walks the source folders of a range of the roots, splitting the range
+	 * until a task walks a single folder
+	 */
+	private static class WalkTask extends RecursiveTask<List<TypeEntry>> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final IPackageFragmentRoot[] roots;
+		private final int from;
+		private final int to;
+		private final IProgressMonitor workerMonitor;
+		private final AtomicInteger walked;
+		
+		WalkTask(IPackageFragmentRoot[] roots, int from, int to, IProgressMonitor workerMonitor, AtomicInteger walked) {
+			this.roots = roots;
+			this.from = from;
+			this.to = to;
+			this.workerMonitor = workerMonitor;
+			this.walked = walked;
+		}
+		
+		@Override
+		protected List<TypeEntry> compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				WalkTask first = new WalkTask(roots, from, middle, workerMonitor, walked);
+				first.fork();
+				List<TypeEntry> second = new WalkTask(roots, middle, to, workerMonitor, walked).compute();
+				List<TypeEntry> entries = first.join();
+				entries.addAll(second);
+				return entries;
+			}
+			
+			ArrayList<IType> types = new ArrayList<IType>();
+			if (to > from && !workerMonitor.isCanceled()) {
+				try {
+					WikiExportModel.collectAllTypesInProject(types, roots[from], workerMonitor);
+				} catch (JavaModelException e) {
+					throw new WalkException(e);
+				}
+			}
+			ArrayList<TypeEntry> entries = new ArrayList<TypeEntry>(types.size());
+			for (IType type: types) {
+				entries.add(new TypeEntry(type));
+			}
+			walked.incrementAndGet();
+			return entries;
+		}
+	}
+	
+	/**
+	 * Carries a failure of the java model out of a walk task
+	 */
+	private static class WalkException extends RuntimeException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		WalkException(JavaModelException cause) {
+			super(cause);
+		}
+	}
+	
+	/**
+	 * Walks the projects one at a time
+	 */
+	public ProjectWalkDiscovery() {
+		this(1);
+	}
+	
+	/**
+	 * @param threads
+	 * 			Parallelism of the pool walking the source folders,
+	 * 			the projects are walked one at a time when 1
+	 */
+	public ProjectWalkDiscovery(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	@Override
+	public void discover(TypeDiscoveryListener listener, IProgressMonitor monitor) throws CoreException {
+		IJavaProject[] javaProjects = WikiExportModel.getJavaProjects();
+		if (threads == 1) {
+			discoverSerially(javaProjects, listener, monitor);
+			return;
+		}
+		
+		ArrayList<IPackageFragmentRoot> sourceRoots = new ArrayList<IPackageFragmentRoot>();
+		for (IJavaProject proj: javaProjects) {
+			for (IPackageFragmentRoot root: proj.getPackageFragmentRoots()) {
+				// Skip the jars
+				if (!root.isReadOnly()) {
+					sourceRoots.add(root);
+				}
+			}
+		}
+		IPackageFragmentRoot[] roots = sourceRoots.toArray(new IPackageFragmentRoot[sourceRoots.size()]);
+		monitor.beginTask("Searching for system objects", roots.length + 1);
+		
+		// The workers only check this one for cancellation, the monitor
+		// is only used from this thread
+		IProgressMonitor workerMonitor = new NullProgressMonitor();
+		AtomicInteger walked = new AtomicInteger();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			ForkJoinTask<List<TypeEntry>> task = pool.submit(
+					new WalkTask(roots, 0, roots.length, workerMonitor, walked));
+			List<TypeEntry> entries = null;
+			int reported = 0;
+			while (entries == null) {
+				if (monitor.isCanceled()) {
+					return;
+				}
+				try {
+					entries = task.get(200, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// Still walking
+				}
+				int done = Math.min(walked.get(), roots.length);
+				monitor.worked(done - reported);
+				reported = done;
+			}
+			
+			TypeEntry[] sorted = entries.toArray(new TypeEntry[entries.size()]);
+			Arrays.parallelSort(sorted, TypeEntry.NAME_ORDER);
+			monitor.worked(1);
+			if (sorted.length > 0 && !monitor.isCanceled()) {
+				listener.typesFound(Arrays.asList(sorted));
+			}
+		} catch (ExecutionException e) {
+			// The pool may rethrow a copy of the walk exception, caused by the original
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof JavaModelException) {
+					throw (JavaModelException)cause;
+				}
+			}
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+					"Failed to walk the projects", e.getCause()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			workerMonitor.setCanceled(true);
+			pool.shutdownNow();
+			monitor.done();
+		}
+	}
+	
+	private void discoverSerially(IJavaProject[] javaProjects, TypeDiscoveryListener listener, IProgressMonitor monitor) throws CoreException {
+		monitor.beginTask("Searching for system objects", javaProjects.length);
+		
+		for (IJavaProject proj: javaProjects) {
+			if (monitor.isCanceled()) {
+				break;
+			}
+			monitor.subTask(proj.getElementName());
+			
+			ArrayList<IType> types = new ArrayList<IType>();
+			WikiExportModel.collectAllTypesInProject(types, proj, monitor);
+			if (!types.isEmpty() && !monitor.isCanceled()) {
+				ArrayList<TypeEntry> entries = new ArrayList<TypeEntry>(types.size());
+				for (IType type: types) {
+					entries.add(new TypeEntry(type));
+				}
+				listener.typesFound(entries);
+			}
+			monitor.worked(1);
+		}
+		monitor.done();
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered page sections of the members. The members of a superclass are
+ * shared by the snapshots of all its subclasses, so their sections are
+ * rendered once per format and stitched into every subclass page, in this
+ * run and the next ones. The formaters hold no state, so the sections are
+ * kept by formater class. The least recently used members are evicted.
+ */
+public class RenderedFragmentCache {
+	
+	private static final int MAX_ENTRIES = 20000;
+	
+	// The members compare by identity
+	private LinkedHashMap<SystemObjectSnapshot.Member, Map<Class<?>, String>> fragments =
+		new LinkedHashMap<SystemObjectSnapshot.Member, Map<Class<?>, String>>(256, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<SystemObjectSnapshot.Member, Map<Class<?>, String>> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+	
+	/**
+	 * Returns the rendered section of the member
+	 * @param member
+	 * 			The member
+	 * @param formater
+	 * 			The formater that rendered it
+	 * @return
+	 * 			String or null if it was not rendered yet in this format
+	 */
+	public synchronized String get(SystemObjectSnapshot.Member member, AppendableFormater formater) {
+		Map<Class<?>, String> byFormat = fragments.get(member);
+		if (byFormat == null) {
+			return null;
+		}
+		return byFormat.get(getFormat(formater));
+	}
+	
+	/**
+	 * Keeps the rendered section of the member
+	 * @param member
+	 * 			The member
+	 * @param formater
+	 * 			The formater that rendered it
+	 * @param fragment
+	 * 			The section
+	 */
+	public synchronized void put(SystemObjectSnapshot.Member member, AppendableFormater formater, String fragment) {
+		Map<Class<?>, String> byFormat = fragments.get(member);
+		if (byFormat == null) {
+			byFormat = new HashMap<Class<?>, String>(4);
+			fragments.put(member, byFormat);
+		}
+		byFormat.put(getFormat(formater), fragment);
+	}
+	
+	/**
+	 * Removes all the sections
+	 */
+	public synchronized void clear() {
+		fragments.clear();
+	}
+	
+	/**
+	 * Returns the class doing the rendering, the adapted one for an adapter
+	 */
+	private static Class<?> getFormat(AppendableFormater formater) {
+		if (formater instanceof FormaterAdapter) {
+			return ((FormaterAdapter)formater).getAdaptedClass();
+		}
+		return formater.getClass();
+	}
+}
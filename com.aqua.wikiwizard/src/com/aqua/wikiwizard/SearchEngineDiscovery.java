@@ -0,0 +1,68 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameRequestor;
+
+/**
+ * Finds the types using the JDT search index. No compilation unit is
+ * opened and no type handle is created.
+ */
+public class SearchEngineDiscovery implements TypeDiscovery {
+	
+	// Number of types reported to the listener at once
+	private static final int BATCH_SIZE = 500;
+
+	@Override
+	public void discover(final TypeDiscoveryListener listener, IProgressMonitor monitor) throws CoreException {
+		// Source folders only, the jars are skipped like in the project walk
+		IJavaSearchScope scope = SearchEngine.createJavaSearchScope(
+				WikiExportModel.getJavaProjects(), IJavaSearchScope.SOURCES);
+		
+		final ArrayList<TypeEntry> batch = new ArrayList<TypeEntry>();
+		TypeNameRequestor requestor = new TypeNameRequestor() {
+			public void acceptType(int modifiers, char[] packageName, char[] simpleTypeName,
+					char[][] enclosingTypeNames, String path) {
+				// Only top level types
+				if (enclosingTypeNames != null && enclosingTypeNames.length > 0) {
+					return;
+				}
+				batch.add(new TypeEntry(new String(simpleTypeName), new String(packageName), path));
+				if (batch.size() == BATCH_SIZE) {
+					listener.typesFound(new ArrayList<TypeEntry>(batch));
+					batch.clear();
+				}
+			}
+		};
+		
+		new SearchEngine().searchAllTypeNames(null, SearchPattern.R_PATTERN_MATCH,
+				null, SearchPattern.R_PATTERN_MATCH, IJavaSearchConstants.TYPE, scope,
+				requestor, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+		
+		if (!batch.isEmpty() && !monitor.isCanceled()) {
+			listener.typesFound(batch);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.core.IType;
+
+/**
+ * Pages of a site export, built once from all the exported types before
+ * the pages are rendered. Resolves a type name to its page in constant
+ * time, so only the links to exported types are written. Also renders
+ * the package index pages.
+ */
+public class SiteLinkIndex {
+	
+	public static final String INDEX_PAGE = "index";
+	public static final String PACKAGE_PAGE_SUFFIX = ".package";
+	
+	// Stands for a simple name used by several exported types
+	private static final String AMBIGUOUS = new String();
+	
+	// Page by fully qualified name, and by simple name when it is unique
+	private HashMap<String, String> pages = new HashMap<String, String>();
+	private HashMap<String, String> simpleNames = new HashMap<String, String>();
+	
+	// Full names of the exported types by package, both sorted
+	private TreeMap<String, List<String>> packages = new TreeMap<String, List<String>>();
+	
+	/**
+	 * @param types
+	 * 			All the exported types
+	 */
+	public SiteLinkIndex(List<IType> types) {
+		for (IType type: types) {
+			// The pages of the member types are named after the binary name
+			String fullName = type.getFullyQualifiedName('.');
+			String page = type.getFullyQualifiedName();
+			pages.put(fullName, page);
+			
+			String simpleName = type.getElementName();
+			simpleNames.put(simpleName, simpleNames.containsKey(simpleName) ? AMBIGUOUS : page);
+			
+			String packageName = type.getPackageFragment().getElementName();
+			List<String> names = packages.get(packageName);
+			if (names == null) {
+				names = new ArrayList<String>();
+				packages.put(packageName, names);
+			}
+			names.add(fullName);
+		}
+		for (List<String> names: packages.values()) {
+			Collections.sort(names);
+		}
+	}
+	
+	/**
+	 * Returns the page of a type
+	 * @param typeName
+	 * 			A fully qualified name, or a simple name as found in unresolved signatures
+	 * @return
+	 * 			The page name or null if the type is not exported
+	 */
+	public String getPage(String typeName) {
+		if (typeName == null) {
+			return null;
+		}
+		String page = pages.get(typeName);
+		if (page == null && typeName.indexOf('.') == -1) {
+			page = simpleNames.get(typeName);
+			if (page == AMBIGUOUS) {
+				return null;
+			}
+		}
+		return page;
+	}
+	
+	/**
+	 * Returns the index page name of a package
+	 * @param packageName
+	 * 			The package name
+	 * @return
+	 * 			String
+	 */
+	public static String getPackagePage(String packageName) {
+		return (packageName.length() == 0 ? "default" : packageName) + PACKAGE_PAGE_SUFFIX;
+	}
+	
+	/**
+	 * Returns the packages of the exported types, sorted
+	 * @return
+	 * 			Set of package names
+	 */
+	public Set<String> getPackages() {
+		return packages.keySet();
+	}
+	
+	/**
+	 * Returns a key that changes when a type is added to or removed from the site
+	 * @return
+	 * 			String
+	 */
+	public String getFingerprint() {
+		StringBuilder buf = new StringBuilder();
+		for (List<String> names: packages.values()) {
+			for (String name: names) {
+				buf.append(name).append(';');
+			}
+		}
+		return Integer.toHexString(buf.toString().hashCode()) + ":" + pages.size();
+	}
+	
+	/**
+	 * Writes a type name, linking the exported types it mentions
+	 * @param formater
+	 * 			The output format
+	 * @param buf
+	 * 			The page
+	 * @param typeName
+	 * 			A type like <code>List&lt;Device&gt;</code>
+	 * @throws IOException
+	 */
+	public void writeType(AppendableFormater formater, Appendable buf, String typeName) throws IOException {
+		if (typeName == null) {
+			formater.code(buf, null);
+			return;
+		}
+		// The text between the links is written as code
+		int length = typeName.length();
+		int start = 0;
+		int text = 0;
+		while (start < length) {
+			int end = start;
+			while (end < length && (Character.isJavaIdentifierPart(typeName.charAt(end)) || typeName.charAt(end) == '.')) {
+				end++;
+			}
+			if (end == start) {
+				start++;
+				continue;
+			}
+			String name = typeName.substring(start, end);
+			String page = getPage(name);
+			if (page != null) {
+				if (text < start) {
+					formater.code(buf, typeName.substring(text, start));
+				}
+				formater.link(buf, page, name);
+				text = end;
+			}
+			start = end;
+		}
+		if (text < length) {
+			formater.code(buf, typeName.substring(text));
+		}
+	}
+	
+	/**
+	 * Writes the page listing the packages
+	 * @param formater
+	 * 			The output format
+	 * @param buf
+	 * 			The page
+	 * @throws IOException
+	 */
+	public void writeIndexPage(AppendableFormater formater, Appendable buf) throws IOException {
+		formater.h1(buf, "System Objects");
+		for (String packageName: packages.keySet()) {
+			formater.bullet(buf);
+			formater.link(buf, getPackagePage(packageName), packageName.length() == 0 ? "(default package)" : packageName);
+			formater.lineBreak(buf);
+		}
+	}
+	
+	/**
+	 * Writes the page listing the types of a package
+	 * @param formater
+	 * 			The output format
+	 * @param buf
+	 * 			The page
+	 * @param packageName
+	 * 			The package
+	 * @throws IOException
+	 */
+	public void writePackagePage(AppendableFormater formater, Appendable buf, String packageName) throws IOException {
+		formater.h1(buf, "Package " + packageName);
+		formater.bullet(buf);
+		formater.link(buf, INDEX_PAGE, "All packages");
+		formater.lineBreak(buf);
+		for (String fullName: packages.get(packageName)) {
+			formater.bullet(buf);
+			formater.link(buf, pages.get(fullName), fullName.substring(fullName.lastIndexOf('.') + 1));
+			formater.lineBreak(buf);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.List;
+
+/**
+ * Everything shown on the page of a system object, extracted once from the
+ * java model and then rendered in any number of formats
+ */
+public class SystemObjectDocument {
+	
+	private String title;
+	private String superClassFullName;
+	private String superClassSimpleName;
+	private String documentation;
+	private Property[] fields;
+	private Property[] methods;
+	
+	// The snapshot members of the properties, their sections are cached
+	private List<SystemObjectSnapshot.Member> fieldMembers = null;
+	private List<SystemObjectSnapshot.Member> methodMembers = null;
+	
+	/**
+	 * @param title
+	 * 			The short name of the system object
+	 * @param superClassFullName
+	 * 			Full name of the superclass, the link target
+	 * @param superClassSimpleName
+	 * 			Simple name of the superclass, the link title
+	 * @param documentation
+	 * 			Javadoc of the system object
+	 * @param fields
+	 * 			The documented fields
+	 * @param methods
+	 * 			The documented methods
+	 */
+	public SystemObjectDocument(String title, String superClassFullName, String superClassSimpleName,
+			String documentation, Property[] fields, Property[] methods) {
+		this.title = title;
+		this.superClassFullName = superClassFullName;
+		this.superClassSimpleName = superClassSimpleName;
+		this.documentation = documentation;
+		this.fields = fields == null ? new Property[0] : fields;
+		this.methods = methods == null ? new Property[0] : methods;
+	}
+	
+	/**
+	 * Creates the page of a snapshot
+	 * @param snapshot
+	 * 			The system object
+	 */
+	public SystemObjectDocument(SystemObjectSnapshot snapshot) {
+		this(snapshot.getShortName(), snapshot.getSuperClassFullName(), snapshot.getSuperClassSimpleName(),
+				snapshot.getDocumentation(), toProperties(snapshot.getFields()), toProperties(snapshot.getMethods()));
+		fieldMembers = snapshot.getFields();
+		methodMembers = snapshot.getMethods();
+	}
+	
+	private static Property[] toProperties(List<SystemObjectSnapshot.Member> members) {
+		Property[] properties = new Property[members.size()];
+		for (int i = 0; i < properties.length; i++) {
+			properties[i] = members.get(i).toProperty();
+		}
+		return properties;
+	}
+	
+	public String getTitle() {
+		return title;
+	}
+	
+	public String getSuperClassFullName() {
+		return superClassFullName;
+	}
+	
+	public String getSuperClassSimpleName() {
+		return superClassSimpleName;
+	}
+	
+	public String getDocumentation() {
+		return documentation;
+	}
+	
+	public Property[] getFields() {
+		return fields;
+	}
+	
+	public Property[] getMethods() {
+		return methods;
+	}
+	
+	/**
+	 * Renders the page
+	 * @param formater
+	 * 			The output format
+	 * @param buf
+	 * 			Where to write the page, a <code>Writer</code> or a buffer
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @throws Exception
+	 */
+	public void write(AppendableFormater formater, Appendable buf, ExportMetrics metrics) throws Exception {
+		write(formater, buf, null, metrics);
+	}
+	
+	/**
+	 * Renders the page of a site export. Only the exported types are linked,
+	 * including the field and return types.
+	 * @param formater
+	 * 			The output format
+	 * @param buf
+	 * 			Where to write the page, a <code>Writer</code> or a buffer
+	 * @param links
+	 * 			The pages of the site, null to link the superclass only
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @throws Exception
+	 */
+	public void write(AppendableFormater formater, Appendable buf, SiteLinkIndex links, ExportMetrics metrics)
+			throws Exception {
+		// add the header
+		formater.h1(buf, title + " System Object");
+		
+		formater.bullet(buf); 
+		formater.formatText(buf, "Super class: ");
+		if (links == null) {
+			formater.link(buf, superClassFullName, superClassSimpleName);
+		} else if (links.getPage(superClassFullName) != null) {
+			formater.link(buf, links.getPage(superClassFullName), superClassSimpleName);
+		} else {
+			formater.code(buf, superClassSimpleName);
+		}
+		formater.lineBreak(buf);
+
+		formater.h2(buf, "Documentation");
+		formater.formatText(buf, documentation);
+		formater.lineBreak(buf);
+		
+		if (fields.length > 0) {
+			formater.h2(buf, "Public fields");
+			for (int i = 0; i < fields.length; i++) {
+				if (links == null) {
+					writeSection(formater, buf, fields[i], fieldMembers == null ? null : fieldMembers.get(i), true,
+							metrics);
+				} else {
+					// Not cached since the links depend on the exported types
+					writeProperty(formater, buf, fields[i], true, links);
+				}
+			}
+		}		
+
+		formater.h2(buf, "Public Methods");
+		for (int i = 0; i < methods.length; i++) {
+			if (links == null) {
+				writeSection(formater, buf, methods[i], methodMembers == null ? null : methodMembers.get(i), false,
+						metrics);
+			} else {
+				writeProperty(formater, buf, methods[i], false, links);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the section of a member. The sections of the snapshot members are
+	 * rendered once per format, inherited members are then shared by all the subclass pages.
+	 */
+	private static void writeSection(AppendableFormater formater, Appendable buf, Property property,
+			SystemObjectSnapshot.Member member, boolean field, ExportMetrics metrics) throws Exception {
+		if (member == null) {
+			writeProperty(formater, buf, property, field, null);
+			return;
+		}
+		
+		RenderedFragmentCache cache = Activator.getPlugin().getFragmentCache();
+		String fragment = cache.get(member, formater);
+		if (fragment == null) {
+			metrics.increment(ExportMetrics.Counter.FRAGMENT_MISSES);
+			StringBuilder section = new StringBuilder();
+			writeProperty(formater, section, property, field, null);
+			fragment = section.toString();
+			cache.put(member, formater, fragment);
+		} else {
+			metrics.increment(ExportMetrics.Counter.FRAGMENT_HITS);
+		}
+		buf.append(fragment);
+	}
+	
+	/**
+	 * Writes the section of a member, with the field type or the method return type
+	 * @param links
+	 * 			The pages of a site export to link the types to, or null
+	 */
+	private static void writeProperty(AppendableFormater formater, Appendable buf, Property property,
+			boolean field, SiteLinkIndex links) throws Exception {
+		formater.h3(buf, property.name);
+		
+		formater.formatText(buf, property.documentation);
+		formater.lineBreak(buf);
+		if (!field) {
+			if (property.type != null && !property.type.equals("void")) {
+				formater.tab(buf);
+				formater.bold(buf, "Returns: ");
+				writeType(formater, buf, property.type, links);
+				formater.lineBreak(buf);
+			}
+			return;
+		}
+		formater.tab(buf);
+		formater.bold(buf, "Type: ");
+		writeType(formater, buf, property.type, links);
+		formater.lineBreak(buf);
+		formater.tab(buf);
+		formater.bold(buf, "Default Value: ");
+		formater.code(buf, property.defaultValue);
+		formater.lineBreak(buf);
+	}
+	
+	private static void writeType(AppendableFormater formater, Appendable buf, String type,
+			SiteLinkIndex links) throws Exception {
+		if (links == null) {
+			formater.code(buf, type);
+		} else {
+			links.writeType(formater, buf, type);
+		}
+	}
+}
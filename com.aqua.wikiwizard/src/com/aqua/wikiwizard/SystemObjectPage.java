@@ -16,23 +16,34 @@
 
 package com.aqua.wikiwizard;
 
-import org.eclipse.jdt.core.IJavaElement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.IMember;
-import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jface.dialogs.IDialogPage;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.wizard.WizardPage;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.KeyEvent;
 import org.eclipse.swt.events.KeyListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
-import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.IWorkbench;
 
 /**
@@ -40,12 +51,19 @@ import org.eclipse.ui.IWorkbench;
  * @author Guy Arieli, Michael Oziransky
  */
 public class SystemObjectPage extends WizardPage implements Listener,
-		SelectionListener, KeyListener {
+		SelectionListener, KeyListener, TypeDiscoveryListener {
 	public static final String copyright = "(c) Copyright AQUA Software 2008.";
 
 	public IWorkbench workbench;
 	public IStructuredSelection selection;
 	private Table table;
+	
+	// Type-ahead keys typed in a row
+	private StringBuilder typedPrefix = new StringBuilder();
+	private int lastKeyTime = 0;
+	
+	// Row selected by the type-ahead for the current prefix, -1 if none
+	private int typedIndex = -1;
 
 	public SystemObjectPage(IWorkbench workbench, IStructuredSelection selection) {
 		super("Page 1");
@@ -65,17 +83,73 @@ public class SystemObjectPage extends WizardPage implements Listener,
 		Composite composite = new Composite(parent, SWT.NULL);
 
 		// create the desired layout for this wizard page
-		composite.setLayout(new FillLayout());
+		composite.setLayout(new GridLayout(2, false));
 		final WikiExportWizard wizard = (WikiExportWizard) getWizard();
+		final IPreferenceStore store = Activator.getPlugin().getPreferenceStore();
+		
+		// Limit the list to the subclasses of the base type
+		final Button subclassesButton = new Button(composite, SWT.CHECK);
+		subclassesButton.setText("Only subclasses of:");
+		subclassesButton.setSelection(store.getBoolean(Activator.ONLY_SUBCLASSES));
+		final Text baseTypeText = new Text(composite, SWT.BORDER | SWT.SINGLE);
+		baseTypeText.setText(store.getString(Activator.BASE_TYPE));
+		baseTypeText.setEnabled(subclassesButton.getSelection());
+		baseTypeText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+		
+		
+		// Without the subclasses, the projects may be walked instead of using the catalog
+		final Button walkButton = new Button(composite, SWT.CHECK);
+		walkButton.setText("Walk the source folders of all the projects in parallel");
+		walkButton.setSelection(store.getBoolean(Activator.WALK_PROJECTS));
+		walkButton.setEnabled(!subclassesButton.getSelection());
+		GridData walkData = new GridData();
+		walkData.horizontalSpan = 2;
+		walkButton.setLayoutData(walkData);
+		
+		subclassesButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				store.setValue(Activator.ONLY_SUBCLASSES, subclassesButton.getSelection());
+				baseTypeText.setEnabled(subclassesButton.getSelection());
+				walkButton.setEnabled(!subclassesButton.getSelection());
+				restartDiscovery(wizard);
+			}
+		});
+		walkButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				store.setValue(Activator.WALK_PROJECTS, walkButton.getSelection());
+				restartDiscovery(wizard);
+			}
+		});
+		baseTypeText.addSelectionListener(new SelectionAdapter() {
+			public void widgetDefaultSelected(SelectionEvent e) {
+				store.setValue(Activator.BASE_TYPE, baseTypeText.getText().trim());
+				restartDiscovery(wizard);
+			}
+		});
 
-		table = new Table(composite, SWT.VIRTUAL | SWT.V_SCROLL | SWT.SINGLE);
+		// Narrow the list while typing
+		new Label(composite, SWT.NONE).setText("Filter:");
+		final Text filterText = new Text(composite, SWT.BORDER | SWT.SINGLE);
+		filterText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+		filterText.addModifyListener(new ModifyListener() {
+			public void modifyText(ModifyEvent e) {
+				wizard.exportModel.setFilter(filterText.getText());
+				refreshTable(wizard.exportModel);
+			}
+		});
+
+		table = new Table(composite, SWT.VIRTUAL | SWT.V_SCROLL | SWT.MULTI | SWT.BORDER);
+		GridData tableData = new GridData(GridData.FILL_BOTH);
+		tableData.horizontalSpan = 2;
+		table.setLayoutData(tableData);
+		// The discovery job may already have added some types
 		table.setItemCount(wizard.exportModel.getObjects().size());
 		table.addListener(SWT.SetData, new Listener() {
 			public void handleEvent(Event event) {
 				TableItem item = (TableItem) event.item;
 				int index = table.indexOf(item);
-				item.setText(getMemberName(wizard.exportModel.getObjects().get(
-						index)));
+				// The label is built once per entry, scrolling does not touch the java model
+				item.setText(wizard.exportModel.getObjects().get(index).getLabel());
 			}
 		});
 		table.addSelectionListener(this);
@@ -84,24 +158,74 @@ public class SystemObjectPage extends WizardPage implements Listener,
 		// Set the composite as the control for this page
 		setControl(composite);
 	}
+	
+	private void restartDiscovery(WikiExportWizard wizard) {
+		setErrorMessage(null);
+		wizard.startDiscovery();
+		refreshTable(wizard.exportModel);
+		setPageComplete(!wizard.workbenchElements.isEmpty());
+	}
 
-	private static String getMemberName(IMember member) {
-		String className = member.getElementName();
-		String packageName = null;
-		IJavaElement parent = member.getParent();
-		while (parent != null) {
-			if (parent instanceof IPackageFragment) {
-				packageName = parent.getElementName();
-				break;
+	@Override
+	public void typesFound(final List<TypeEntry> types) {
+		final Job source = Job.getJobManager().currentJob();
+		workbench.getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				WikiExportWizard wizard = (WikiExportWizard) getWizard();
+				// Drop late results of a discovery that was restarted
+				if (source != wizard.discoveryJob) {
+					return;
+				}
+				WikiExportModel model = wizard.exportModel;
+				model.addTypes(types);
+				if (table == null || table.isDisposed()) {
+					return;
+				}
+				refreshTable(model);
+				setMessage("Searching... " + model.getObjects().size() + " objects found");
 			}
-			parent = parent.getParent();
-		}
-		if (packageName == null) {
-			return className;
-		}
+		});
+	}
+
+	@Override
+	public void discoveryDone(final IStatus status) {
+		final Job source = Job.getJobManager().currentJob();
+		workbench.getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				if (source != ((WikiExportWizard) getWizard()).discoveryJob) {
+					return;
+				}
+				if (getControl() == null || getControl().isDisposed()) {
+					return;
+				}
+				setMessage(null);
+				if (status.getSeverity() == IStatus.ERROR) {
+					setErrorMessage(status.getMessage());
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Updates the virtual table after the model changed, keeping the selection
+	 */
+	private void refreshTable(WikiExportModel model) {
+		table.setItemCount(model.getObjects().size());
+		table.clearAll();
+		typedIndex = -1;
 		
-		// Build the name for easy sorting
-		return className + " - " + packageName + "." + className;
+		List<IMember> selected = model.getSelectedMembers();
+		int[] indices = new int[selected.size()];
+		int count = 0;
+		for (IMember member: selected) {
+			int index = model.indexOf(member);
+			if (index != -1) {
+				indices[count++] = index;
+			}
+		}
+		int[] found = new int[count];
+		System.arraycopy(indices, 0, found, 0, count);
+		table.setSelection(found);
 	}
 
 	/**
@@ -116,22 +240,59 @@ public class SystemObjectPage extends WizardPage implements Listener,
 
 	@Override
 	public void widgetSelected(SelectionEvent e) {
-		int currentSelection = table.getSelectionIndex();
-		((WikiExportWizard) getWizard()).exportModel
-				.setSelectedMember(((WikiExportWizard) getWizard()).exportModel
-						.getObjects().get(currentSelection));
-		setPageComplete(true);
+		// The row picked by the type-ahead is now the user's choice
+		typedIndex = -1;
+		updateSelection();
+	}
+	
+	/**
+	 * Copies the table selection to the model and updates the page completion
+	 */
+	private void updateSelection() {
+		WikiExportModel model = ((WikiExportWizard) getWizard()).exportModel;
+		ArrayList<IMember> members = new ArrayList<IMember>();
+		// The selected types hidden by the filter stay selected
+		for (IMember member: model.getSelectedMembers()) {
+			if (model.indexOf(member) == -1) {
+				members.add(member);
+			}
+		}
+		for (int index: table.getSelectionIndices()) {
+			members.add(model.getObjects().get(index).getType());
+		}
+		model.setSelectedMembers(members);
+		setPageComplete(!members.isEmpty() || !((WikiExportWizard) getWizard()).workbenchElements.isEmpty());
 	}
 
 	@Override
 	public void keyPressed(KeyEvent e) {
+		if (e.character == 0 || !Character.isJavaIdentifierPart(e.character)) {
+			return;
+		}
+		// Keys typed within a second extend the prefix
+		if (e.time - lastKeyTime > 1000) {
+			typedPrefix.setLength(0);
+			typedIndex = -1;
+		}
+		lastKeyTime = e.time;
+		typedPrefix.append(e.character);
+		
 		WikiExportWizard wizard = (WikiExportWizard) getWizard();
-		int index = wizard.exportModel.getObjectByLetter("" + e.character);
-		if (index != -1) {
-			table.setSelection(index);
-			wizard.exportModel.setSelectedMember(wizard.exportModel.
-					getObjects().get(index));
+		int index = wizard.exportModel.getObjectByLetter(typedPrefix.toString());
+		if (index == -1 || index == typedIndex) {
+			return;
+		}
+		// The match of the shorter prefix is replaced, the rest of the selection is kept
+		if (typedIndex != -1) {
+			table.deselect(typedIndex);
+			typedIndex = -1;
+		}
+		if (!table.isSelected(index)) {
+			table.select(index);
+			typedIndex = index;
 		}
+		table.showItem(table.getItem(index));
+		updateSelection();
 	}
 
 	@Override
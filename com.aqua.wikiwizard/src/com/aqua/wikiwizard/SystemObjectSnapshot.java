@@ -0,0 +1,209 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.core.Signature;
+
+/**
+ * Plain data copy of a system object and of its documented members, read
+ * from the java model in one go. Holds no java element, so it can be kept,
+ * compared and rendered without touching the java model again.
+ */
+public final class SystemObjectSnapshot {
+	
+	/**
+	 * A documented field or method
+	 */
+	public static final class Member {
+		
+		private final String name;
+		private final String declaringTypeName;
+		private final int flags;
+		private final String signature;
+		private final String type;
+		private final String documentation;
+		private final String defaultValue;
+		private final String overrideKey;
+		
+		/**
+		 * @param name
+		 * 			The member name
+		 * @param declaringTypeName
+		 * 			Full name of the type declaring the member
+		 * @param flags
+		 * 			The JDT modifier flags
+		 * @param signature
+		 * 			Type signature of a field, method signature of a method
+		 * @param type
+		 * 			Readable type of a field, return type of a method
+		 * @param documentation
+		 * 			Cleaned javadoc or null
+		 * @param defaultValue
+		 * 			Field initial value, null for the methods
+		 */
+		public Member(String name, String declaringTypeName, int flags, String signature,
+				String type, String documentation, String defaultValue) {
+			this.name = name;
+			this.declaringTypeName = declaringTypeName;
+			this.flags = flags;
+			this.signature = signature;
+			this.type = type;
+			this.documentation = documentation;
+			this.defaultValue = defaultValue;
+			this.overrideKey = overrideKey(name, signature);
+		}
+		
+		/**
+		 * Returns a key equal for a member and the members it overrides or hides:
+		 * the name of a field, the name and the erased parameter types of a method
+		 * @param name
+		 * 			The member name
+		 * @param signature
+		 * 			Type signature of a field, method signature of a method
+		 * @return
+		 * 			String
+		 */
+		public static String overrideKey(String name, String signature) {
+			if (signature == null || signature.length() == 0 || signature.charAt(0) != Signature.C_PARAM_START) {
+				return name;
+			}
+			// Source signatures are not resolved, so only the simple names are compared
+			StringBuilder buf = new StringBuilder(name).append('(');
+			String[] parameters = Signature.getParameterTypes(signature);
+			for (int i = 0; i < parameters.length; i++) {
+				if (i > 0) {
+					buf.append(',');
+				}
+				buf.append(Signature.getSimpleName(Signature.toString(Signature.getTypeErasure(parameters[i]))));
+			}
+			return buf.append(')').toString();
+		}
+		
+		public String getOverrideKey() {
+			return overrideKey;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public String getDeclaringTypeName() {
+			return declaringTypeName;
+		}
+		
+		public int getFlags() {
+			return flags;
+		}
+		
+		public String getSignature() {
+			return signature;
+		}
+		
+		public String getType() {
+			return type;
+		}
+		
+		public String getDocumentation() {
+			return documentation;
+		}
+		
+		public String getDefaultValue() {
+			return defaultValue;
+		}
+		
+		/**
+		 * Returns the member as a page property
+		 * @return
+		 * 			A new Property
+		 */
+		public Property toProperty() {
+			Property property = new Property();
+			property.name = name;
+			property.type = type;
+			property.documentation = documentation;
+			property.defaultValue = defaultValue;
+			return property;
+		}
+	}
+	
+	private final String fullName;
+	private final String shortName;
+	private final String superClassFullName;
+	private final String superClassSimpleName;
+	private final String documentation;
+	private final List<Member> fields;
+	private final List<Member> methods;
+	
+	/**
+	 * @param fullName
+	 * 			Fully qualified name of the system object
+	 * @param shortName
+	 * 			Type qualified name of the system object
+	 * @param superClassFullName
+	 * 			Full name of the superclass
+	 * @param superClassSimpleName
+	 * 			Simple name of the superclass
+	 * @param documentation
+	 * 			Cleaned javadoc of the system object
+	 * @param fields
+	 * 			The documented fields, the array is copied
+	 * @param methods
+	 * 			The documented methods, the array is copied
+	 */
+	public SystemObjectSnapshot(String fullName, String shortName, String superClassFullName,
+			String superClassSimpleName, String documentation, Member[] fields, Member[] methods) {
+		this.fullName = fullName;
+		this.shortName = shortName;
+		this.superClassFullName = superClassFullName;
+		this.superClassSimpleName = superClassSimpleName;
+		this.documentation = documentation;
+		this.fields = Collections.unmodifiableList(Arrays.asList(fields.clone()));
+		this.methods = Collections.unmodifiableList(Arrays.asList(methods.clone()));
+	}
+	
+	public String getFullName() {
+		return fullName;
+	}
+	
+	public String getShortName() {
+		return shortName;
+	}
+	
+	public String getSuperClassFullName() {
+		return superClassFullName;
+	}
+	
+	public String getSuperClassSimpleName() {
+		return superClassSimpleName;
+	}
+	
+	public String getDocumentation() {
+		return documentation;
+	}
+	
+	public List<Member> getFields() {
+		return fields;
+	}
+	
+	public List<Member> getMethods() {
+		return methods;
+	}
+}
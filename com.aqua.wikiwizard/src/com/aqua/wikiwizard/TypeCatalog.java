@@ -0,0 +1,412 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ISaveContext;
+import org.eclipse.core.resources.ISaveParticipant;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * Plugin wide catalog of the workspace source types, kept sorted by name.
+ * It is built once with <code>SearchEngineDiscovery</code> and then kept current
+ * by applying the java element deltas. The catalog is saved to the plugin state
+ * location on workspace save, and the resource changes done while the plugin was
+ * not active are applied when it is loaded again.
+ */
+public class TypeCatalog implements TypeDiscovery, IElementChangedListener,
+		IResourceChangeListener, ISaveParticipant {
+	
+	private static final String FILE_VERSION = "1";
+	
+	private File catalogFile;
+	
+	private HashMap<String, TypeEntry[]> typesByPath = new HashMap<String, TypeEntry[]>();
+	private ArrayList<TypeEntry> sortedTypes = new ArrayList<TypeEntry>();
+	
+	// Compilation units that changed and should be read again
+	private HashSet<String> changedPaths = new HashSet<String>();
+	
+	// True once the catalog reflects the workspace (up to the changed paths)
+	private boolean built = false;
+	
+	// Set while the catalog is built, the changes are recorded meanwhile
+	private boolean building = false;
+	
+	// Set when a change during the build can't be applied afterwards
+	private boolean buildStale = false;
+	
+	/**
+	 * @param catalogFile
+	 * 			The file used to save the catalog between sessions
+	 */
+	public TypeCatalog(File catalogFile) {
+		this.catalogFile = catalogFile;
+	}
+	
+	/**
+	 * Reports all the types, building the catalog first if needed
+	 */
+	@Override
+	public void discover(final TypeDiscoveryListener listener, IProgressMonitor monitor) throws CoreException {
+		if (isBuilt()) {
+			updateChangedPaths();
+			listener.typesFound(getTypes());
+			return;
+		}
+		
+		synchronized (this) {
+			building = true;
+			buildStale = false;
+		}
+		// Collect the types and show them as they are found
+		final ArrayList<TypeEntry> allTypes = new ArrayList<TypeEntry>();
+		try {
+			new SearchEngineDiscovery().discover(new TypeDiscoveryListener() {
+				public void typesFound(List<TypeEntry> types) {
+					allTypes.addAll(types);
+					listener.typesFound(types);
+				}
+				public void discoveryDone(IStatus status) {}
+			}, monitor);
+			
+			if (monitor.isCanceled()) {
+				return;
+			}
+			
+			synchronized (this) {
+				typesByPath.clear();
+				sortedTypes.clear();
+				for (TypeEntry entry: allTypes) {
+					addEntry(entry);
+				}
+				built = !buildStale;
+			}
+		} finally {
+			synchronized (this) {
+				building = false;
+			}
+		}
+		// Apply the changes done while the catalog was built
+		updateChangedPaths();
+	}
+	
+	/**
+	 * Returns a sorted copy of the catalog
+	 * @return
+	 * 		List of <code>TypeEntry</code>
+	 */
+	public synchronized List<TypeEntry> getTypes() {
+		return new ArrayList<TypeEntry>(sortedTypes);
+	}
+	
+	public synchronized boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Reads again the types of every compilation unit that changed
+	 */
+	private void updateChangedPaths() {
+		String[] paths;
+		synchronized (this) {
+			paths = changedPaths.toArray(new String[changedPaths.size()]);
+			changedPaths.clear();
+		}
+		
+		for (String path: paths) {
+			ArrayList<TypeEntry> entries = new ArrayList<TypeEntry>();
+			IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(path));
+			IJavaElement element = JavaCore.create(file);
+			try {
+				// Only units on the build path exist
+				if (element instanceof ICompilationUnit && element.exists() && !element.isReadOnly()) {
+					for (IType type: ((ICompilationUnit)element).getTypes()) {
+						entries.add(new TypeEntry(type));
+					}
+				}
+			} catch (CoreException e) {
+				Activator.getPlugin().getLog().log(e.getStatus());
+			}
+			
+			synchronized (this) {
+				removePath(path);
+				for (TypeEntry entry: entries) {
+					addEntry(entry);
+				}
+			}
+		}
+	}
+	
+	private void addEntry(TypeEntry entry) {
+		TypeEntry[] entries = typesByPath.get(entry.getPath());
+		if (entries == null) {
+			entries = new TypeEntry[] {entry};
+		} else {
+			TypeEntry[] newEntries = new TypeEntry[entries.length + 1];
+			System.arraycopy(entries, 0, newEntries, 0, entries.length);
+			newEntries[entries.length] = entry;
+			entries = newEntries;
+		}
+		typesByPath.put(entry.getPath(), entries);
+		
+		int index = Collections.binarySearch(sortedTypes, entry, TypeEntry.NAME_ORDER);
+		if (index < 0) {
+			sortedTypes.add(-index - 1, entry);
+		}
+	}
+	
+	private void removePath(String path) {
+		TypeEntry[] entries = typesByPath.remove(path);
+		if (entries == null) {
+			return;
+		}
+		for (TypeEntry entry: entries) {
+			int index = Collections.binarySearch(sortedTypes, entry, TypeEntry.NAME_ORDER);
+			if (index >= 0) {
+				sortedTypes.remove(index);
+			}
+		}
+	}
+	
+	/**
+	 * Removes all the compilation units under the given folder path
+	 */
+	private void removeFolder(String folderPath) {
+		String prefix = folderPath.endsWith("/") ? folderPath : folderPath + "/";
+		String[] paths = typesByPath.keySet().toArray(new String[typesByPath.size()]);
+		for (String path: paths) {
+			if (path.startsWith(prefix)) {
+				removePath(path);
+			}
+		}
+	}
+
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		synchronized (this) {
+			if (built || building) {
+				processDelta(event.getDelta());
+			}
+		}
+	}
+	
+	private void processDelta(IJavaElementDelta delta) {
+		IJavaElement element = delta.getElement();
+		int flags = delta.getFlags();
+		
+		// Nothing to do with the jars
+		if (element.getElementType() == IJavaElement.PACKAGE_FRAGMENT_ROOT
+				&& ((IPackageFragmentRoot)element).isArchive()) {
+			return;
+		}
+		
+		switch (element.getElementType()) {
+		case IJavaElement.JAVA_MODEL:
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+		case IJavaElement.JAVA_PROJECT:
+		case IJavaElement.PACKAGE_FRAGMENT:
+			if (delta.getKind() == IJavaElementDelta.REMOVED
+					|| (flags & (IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH)) != 0) {
+				removeFolder(element.getPath().toString());
+				// The types found by a running build may include the folder
+				buildStale |= building;
+				return;
+			}
+			if (delta.getKind() == IJavaElementDelta.ADDED
+					|| (flags & (IJavaElementDelta.F_OPENED | IJavaElementDelta.F_ADDED_TO_CLASSPATH
+							| IJavaElementDelta.F_CLASSPATH_CHANGED)) != 0) {
+				// Too coarse to follow, the catalog is built again next time
+				built = false;
+				buildStale |= building;
+				return;
+			}
+			break;
+		case IJavaElement.COMPILATION_UNIT:
+			ICompilationUnit unit = (ICompilationUnit)element;
+			// Skip the non primary working copies
+			if (unit.getOwner() != null) {
+				return;
+			}
+			// Added, removed (renamed) or changed: the types are read again
+			// the next time the catalog is used
+			changedPaths.add(unit.getPath().toString());
+			return;
+		default:
+			return;
+		}
+		
+		for (IJavaElementDelta child: delta.getAffectedChildren()) {
+			processDelta(child);
+		}
+	}
+	
+	/**
+	 * Receives the resource changes done since the last saved session
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		if (event.getDelta() == null) {
+			return;
+		}
+		try {
+			event.getDelta().accept(new IResourceDeltaVisitor() {
+				public boolean visit(IResourceDelta delta) {
+					IResource resource = delta.getResource();
+					if (resource.getType() == IResource.FILE && "java".equals(resource.getFileExtension())) {
+						synchronized (TypeCatalog.this) {
+							changedPaths.add(resource.getFullPath().toString());
+						}
+					}
+					return true;
+				}
+			});
+		} catch (CoreException e) {
+			Activator.getPlugin().getLog().log(e.getStatus());
+		}
+	}
+	
+	/**
+	 * Loads the catalog saved in the last session
+	 * @return
+	 * 		true if a saved catalog was loaded
+	 */
+	public boolean load() {
+		if (!catalogFile.exists()) {
+			return false;
+		}
+		
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(catalogFile), "UTF-8"));
+			if (!FILE_VERSION.equals(reader.readLine())) {
+				return false;
+			}
+			
+			synchronized (this) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] parts = line.split("\t", -1);
+					if (parts.length == 3) {
+						addEntry(new TypeEntry(parts[0], parts[1], parts[2]));
+					}
+				}
+				built = true;
+			}
+			return true;
+		} catch (IOException e) {
+			Activator.getPlugin().getLog().log(new Status(IStatus.WARNING,
+					Activator.PLUGIN_ID, "Failed to load the types catalog", e));
+			synchronized (this) {
+				typesByPath.clear();
+				sortedTypes.clear();
+			}
+			return false;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {}
+			}
+		}
+	}
+	
+	/**
+	 * Saves the catalog, the pending changes are applied first
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		if (!isBuilt()) {
+			catalogFile.delete();
+			return;
+		}
+		updateChangedPaths();
+		
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(catalogFile), "UTF-8"));
+		try {
+			writer.write(FILE_VERSION);
+			writer.newLine();
+			for (TypeEntry entry: getTypes()) {
+				writer.write(entry.getSimpleName());
+				writer.write('\t');
+				writer.write(entry.getPackageName());
+				writer.write('\t');
+				writer.write(entry.getPath());
+				writer.newLine();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Override
+	public void saving(ISaveContext context) throws CoreException {
+		if (context.getKind() != ISaveContext.FULL_SAVE) {
+			return;
+		}
+		try {
+			save();
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+					"Failed to save the types catalog", e));
+		}
+		// Get the resource changes done until the next session
+		context.needDelta();
+	}
+
+	@Override
+	public void prepareToSave(ISaveContext context) throws CoreException {}
+
+	@Override
+	public void doneSaving(ISaveContext context) {}
+
+	@Override
+	public void rollback(ISaveContext context) {}
+}
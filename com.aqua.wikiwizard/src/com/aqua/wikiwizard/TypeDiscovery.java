@@ -0,0 +1,38 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Strategy used by <code>TypeDiscoveryJob</code> to find the workspace types.
+ */
+public interface TypeDiscovery {
+	
+	/**
+	 * Finds the types, reporting them to the listener in batches.
+	 * Implementations should return as soon as the monitor is canceled.
+	 * They do not call <code>discoveryDone</code>, the caller reports the end.
+	 * @param listener
+	 * 			Receives the found types
+	 * @param monitor
+	 * 			Progress monitor, never null
+	 * @throws CoreException
+	 */
+	public void discover(TypeDiscoveryListener listener, IProgressMonitor monitor) throws CoreException;
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Background job that collects the workspace types using the given
+ * <code>TypeDiscovery</code>, the listener gets the types as soon as they are found.
+ */
+public class TypeDiscoveryJob extends Job {
+	
+	private TypeDiscovery discovery;
+	private TypeDiscoveryListener listener;
+	private ExportMetrics metrics = new ExportMetrics();
+	
+	public TypeDiscoveryJob(TypeDiscovery discovery, TypeDiscoveryListener listener) {
+		super("Searching for system objects");
+		this.discovery = discovery;
+		this.listener = listener;
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		IStatus status = Status.OK_STATUS;
+		long start = System.nanoTime();
+		try {
+			// Counts the types on their way to the listener,
+			// the end of the discovery is reported once by the job below
+			discovery.discover(new TypeDiscoveryListener() {
+				public void typesFound(List<TypeEntry> types) {
+					metrics.add(ExportMetrics.Counter.TYPES_SCANNED, types.size());
+					listener.typesFound(types);
+				}
+				
+				public void discoveryDone(IStatus status) {}
+			}, monitor);
+			if (monitor.isCanceled()) {
+				status = Status.CANCEL_STATUS;
+			}
+		} catch (OperationCanceledException e) {
+			status = Status.CANCEL_STATUS;
+		} catch (Exception e) {
+			status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Failed to collect the workspace types", e);
+		} finally {
+			metrics.addTime(ExportMetrics.Phase.DISCOVERY, start);
+			monitor.done();
+		}
+		
+		listener.discoveryDone(status);
+		return status;
+	}
+	
+	/**
+	 * Returns the metrics of the discovery
+	 * @return
+	 * 			ExportMetrics
+	 */
+	public ExportMetrics getMetrics() {
+		return metrics;
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+
+/**
+ * Receives the types found by a <code>TypeDiscoveryJob</code>.
+ * Both methods are called from the job thread.
+ */
+public interface TypeDiscoveryListener {
+	
+	/**
+	 * Called each time a batch of types was found
+	 * @param types
+	 * 			The newly found types
+	 */
+	public void typesFound(List<TypeEntry> types);
+	
+	/**
+	 * Called once the discovery is over
+	 * @param status
+	 * 			OK, CANCEL or an error status
+	 */
+	public void discoveryDone(IStatus status);
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * A light weight entry of the types list. Holds only the names and the path
+ * of the compilation unit, the <code>IType</code> handle is created the first
+ * time it is requested.
+ */
+public class TypeEntry {
+	
+	/**
+	 * Sorts the entries by simple name, then by full name and path
+	 */
+	public static final Comparator<TypeEntry> NAME_ORDER = new Comparator<TypeEntry>() {
+		public int compare(TypeEntry t1, TypeEntry t2) {
+			int result = t1.simpleName.compareTo(t2.simpleName);
+			if (result == 0) {
+				result = t1.packageName.compareTo(t2.packageName);
+			}
+			if (result == 0) {
+				result = t1.path.compareTo(t2.path);
+			}
+			return result;
+		}
+	};
+	
+	// Bits of the sort keys, the sign bit is kept clear
+	private static final int INDEX_BITS = 22;
+	private static final int PACKAGE_BITS = 20;
+	private static final int MAX_INDEX = (1 << INDEX_BITS) - 1;
+	private static final int MAX_PACKAGE_RANK = (1 << PACKAGE_BITS) - 1;
+	private static final int MAX_NAME_RANK = (1 << (63 - PACKAGE_BITS - INDEX_BITS)) - 1;
+	
+	private String simpleName;
+	private String packageName;
+	private String path;
+	private String label = null;
+	private IType type = null;
+	
+	/**
+	 * Create an entry from the type names as found in the search index
+	 * @param simpleName
+	 * 			The simple name of the type
+	 * @param packageName
+	 * 			The package name, empty for the default package
+	 * @param path
+	 * 			The workspace path of the compilation unit
+	 */
+	public TypeEntry(String simpleName, String packageName, String path) {
+		// Many entries share the same package, and often the same simple name
+		this.simpleName = simpleName.intern();
+		this.packageName = packageName.intern();
+		this.path = path;
+	}
+	
+	/**
+	 * Create an entry for an existing type handle
+	 * @param type
+	 * 			The type
+	 */
+	public TypeEntry(IType type) {
+		this(type.getElementName(), type.getPackageFragment().getElementName(), type.getPath().toString());
+		this.type = type;
+	}
+	
+	public String getSimpleName() {
+		return simpleName;
+	}
+	
+	public String getPackageName() {
+		return packageName;
+	}
+	
+	public String getPath() {
+		return path;
+	}
+	
+	/**
+	 * Returns the text shown in the types table, built once
+	 * @return
+	 * 			String like "Name - package.Name"
+	 */
+	public String getLabel() {
+		if (label == null) {
+			if (packageName.length() == 0) {
+				label = simpleName;
+			} else {
+				// Build the name for easy sorting
+				label = simpleName + " - " + packageName + "." + simpleName;
+			}
+		}
+		return label;
+	}
+	
+	/**
+	 * Returns true if the entries are in <code>NAME_ORDER</code>
+	 */
+	private static boolean isSortedByName(List<TypeEntry> entries) {
+		for (int i = 1; i < entries.size(); i++) {
+			if (NAME_ORDER.compare(entries.get(i - 1), entries.get(i)) > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Sorts the entries in <code>NAME_ORDER</code>. The distinct names are ranked
+	 * once and the entries are sorted on primitive keys packing the ranks, so
+	 * the names are not compared O(n log n) times. Entries already sorted,
+	 * like the ones of <code>ProjectWalkDiscovery</code>, are only checked.
+	 * @param entries
+	 * 			The entries to sort
+	 */
+	public static void sortByName(List<TypeEntry> entries) {
+		int size = entries.size();
+		if (isSortedByName(entries)) {
+			return;
+		}
+		HashMap<String, Integer> names = new HashMap<String, Integer>();
+		HashMap<String, Integer> packages = new HashMap<String, Integer>();
+		for (TypeEntry entry: entries) {
+			names.put(entry.simpleName, null);
+			packages.put(entry.packageName, null);
+		}
+		if (names.size() > MAX_NAME_RANK || packages.size() > MAX_PACKAGE_RANK || size > MAX_INDEX) {
+			Collections.sort(entries, NAME_ORDER);
+			return;
+		}
+		rank(names);
+		rank(packages);
+		
+		// Name rank, package rank and list index, from the high bits to the low bits
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			TypeEntry entry = entries.get(i);
+			keys[i] = ((long)names.get(entry.simpleName).intValue() << (PACKAGE_BITS + INDEX_BITS))
+					| ((long)packages.get(entry.packageName).intValue() << INDEX_BITS)
+					| i;
+		}
+		Arrays.sort(keys);
+		
+		TypeEntry[] sorted = new TypeEntry[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = entries.get((int)(keys[i] & MAX_INDEX));
+		}
+		for (int i = 0; i < size; i++) {
+			entries.set(i, sorted[i]);
+		}
+		
+		// The same type name in several projects, ordered by path
+		int start = 0;
+		for (int i = 1; i <= size; i++) {
+			if (i == size || (keys[i] >>> INDEX_BITS) != (keys[start] >>> INDEX_BITS)) {
+				if (i - start > 1) {
+					Collections.sort(entries.subList(start, i), NAME_ORDER);
+				}
+				start = i;
+			}
+		}
+	}
+	
+	/**
+	 * Replaces the map values with the alphabetical rank of the keys
+	 */
+	private static void rank(HashMap<String, Integer> map) {
+		String[] keys = map.keySet().toArray(new String[map.size()]);
+		Arrays.sort(keys);
+		for (int i = 0; i < keys.length; i++) {
+			map.put(keys[i], Integer.valueOf(i));
+		}
+	}
+	
+	/**
+	 * Returns the fully qualified name of the type
+	 * @return
+	 * 			String
+	 */
+	public String getFullName() {
+		if (packageName.length() == 0) {
+			return simpleName;
+		}
+		return packageName + "." + simpleName;
+	}
+	
+	/**
+	 * Returns the type handle, creating it on first call
+	 * @return
+	 * 			IType or null if the compilation unit can't be found
+	 */
+	public synchronized IType getType() {
+		if (type == null) {
+			IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(path));
+			IJavaElement element = JavaCore.create(file);
+			if (element instanceof ICompilationUnit) {
+				type = ((ICompilationUnit)element).getType(simpleName);
+			}
+		}
+		return type;
+	}
+	
+	/**
+	 * Checks if this entry stands for the given type without creating a handle
+	 * @param other
+	 * 			The type to compare with
+	 * @return
+	 * 			true if it is the same type
+	 */
+	public boolean represents(IType other) {
+		return simpleName.equals(other.getElementName()) && path.equals(other.getPath().toString());
+	}
+}
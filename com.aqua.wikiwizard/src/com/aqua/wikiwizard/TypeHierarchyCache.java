@@ -0,0 +1,176 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * Cache of the superclasses of the exported types. The superclasses are computed
+ * with a supertype hierarchy, which also fills the cache for every superclass,
+ * so sibling types only need to resolve their direct superclass.
+ * The least recently used entries are evicted, and the entries that depend on
+ * a changed compilation unit are dropped.
+ */
+public class TypeHierarchyCache implements IElementChangedListener {
+	
+	private static final int MAX_ENTRIES = 500;
+	
+	private static class Chain {
+		IType type;
+		IType[] superclasses;
+		
+		Chain(IType type, IType[] superclasses) {
+			this.type = type;
+			this.superclasses = superclasses;
+		}
+	}
+	
+	private LinkedHashMap<String, Chain> entries = new LinkedHashMap<String, Chain>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Chain> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	
+	/**
+	 * Returns the superclasses of the type, nearest first.
+	 * The returned array is shared and should not be changed.
+	 * @param type
+	 * 			The type
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @return
+	 * 			Array of the superclasses
+	 * @throws JavaModelException
+	 */
+	public IType[] getAllSuperclasses(IType type, ExportMetrics metrics) throws JavaModelException {
+		Chain chain = get(type);
+		if (chain != null) {
+			metrics.increment(ExportMetrics.Counter.HIERARCHY_HITS);
+			return chain.superclasses;
+		}
+		metrics.increment(ExportMetrics.Counter.HIERARCHY_MISSES);
+		long start = System.nanoTime();
+		try {
+			return computeSuperclasses(type);
+		} finally {
+			metrics.addTime(ExportMetrics.Phase.HIERARCHY, start);
+		}
+	}
+	
+	/**
+	 * Computes the superclasses of a type that is not in the cache
+	 */
+	private IType[] computeSuperclasses(IType type) throws JavaModelException {
+		// A sibling may have already brought the chain of our superclass
+		IType superType = findSuperclass(type);
+		if (superType != null) {
+			Chain superChain = get(superType);
+			if (superChain != null) {
+				IType[] superclasses = new IType[superChain.superclasses.length + 1];
+				superclasses[0] = superType;
+				System.arraycopy(superChain.superclasses, 0, superclasses, 1, superChain.superclasses.length);
+				put(new Chain(type, superclasses));
+				return superclasses;
+			}
+		}
+		
+		// Only the supertypes are needed, no need to search for the subtypes
+		ITypeHierarchy hierarchy = type.newSupertypeHierarchy(null);
+		IType[] superclasses = hierarchy.getAllSuperclasses(type);
+		put(new Chain(type, superclasses));
+		for (int i = 0; i < superclasses.length; i++) {
+			IType[] rest = new IType[superclasses.length - i - 1];
+			System.arraycopy(superclasses, i + 1, rest, 0, rest.length);
+			put(new Chain(superclasses[i], rest));
+		}
+		return superclasses;
+	}
+	
+	/**
+	 * Resolves the direct superclass without computing a hierarchy
+	 * @return
+	 * 			IType or null if it can't be resolved
+	 */
+	private static IType findSuperclass(IType type) throws JavaModelException {
+		String superclassName = type.getSuperclassName();
+		if (superclassName == null) {
+			return null;
+		}
+		return JavaModelUtils.findReferencedType(type, superclassName);
+	}
+	
+	private synchronized Chain get(IType type) {
+		return entries.get(type.getHandleIdentifier());
+	}
+	
+	private synchronized void put(Chain chain) {
+		entries.put(chain.type.getHandleIdentifier(), chain);
+	}
+	
+	/**
+	 * Removes all the entries
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		ArrayList<ICompilationUnit> changedUnits = new ArrayList<ICompilationUnit>();
+		if (!JavaModelUtils.collectChangedUnits(event.getDelta(), changedUnits)) {
+			clear();
+			return;
+		}
+		if (changedUnits.isEmpty()) {
+			return;
+		}
+		
+		synchronized (this) {
+			Iterator<Chain> iterator = entries.values().iterator();
+			while (iterator.hasNext()) {
+				Chain chain = iterator.next();
+				if (dependsOn(chain, changedUnits)) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+	
+	private static boolean dependsOn(Chain chain, ArrayList<ICompilationUnit> units) {
+		if (units.contains(chain.type.getCompilationUnit())) {
+			return true;
+		}
+		for (IType superclass: chain.superclasses) {
+			if (units.contains(superclass.getCompilationUnit())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
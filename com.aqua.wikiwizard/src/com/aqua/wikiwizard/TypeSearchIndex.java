@@ -0,0 +1,155 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.core.search.SearchPattern;
+
+/**
+ * Name lookup over a list of types. The filter matches (substring, or camel
+ * case like "BSO" for BaseSystemObject) scan the precomputed lower case names.
+ * For the prefix lookups the lower case names are sorted, on the first one,
+ * so a prefix is found with a binary search and the first position of its
+ * names with a tree of the smallest positions.
+ * The index does not change, a new one is built when the list changes.
+ * Not thread safe.
+ */
+public class TypeSearchIndex {
+	
+	// Names by list position
+	private String[] names;
+	private String[] lowerNames;
+	
+	// Lower case names in alphabetical order, built on the first prefix lookup
+	private String[] sortedNames = null;
+	
+	// Smallest list position under each node of a binary tree over the sorted
+	// names. The leaves, from index sortedNames.length, hold the position of each name.
+	private int[] firstPositions;
+	
+	/**
+	 * @param entries
+	 * 			The indexed types, in the order shown to the user
+	 */
+	public TypeSearchIndex(List<TypeEntry> entries) {
+		int size = entries.size();
+		names = new String[size];
+		lowerNames = new String[size];
+		for (int i = 0; i < size; i++) {
+			names[i] = entries.get(i).getSimpleName();
+			lowerNames[i] = names[i].toLowerCase();
+		}
+	}
+	
+	/**
+	 * Sorts the lower case names and builds the tree of their smallest positions
+	 */
+	private void sortNames() {
+		int size = lowerNames.length;
+		String[] distinct = lowerNames.clone();
+		Arrays.sort(distinct);
+		
+		// Name rank in the high bits and list position in the low bits,
+		// so the positions are sorted on primitive keys
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = ((long)Arrays.binarySearch(distinct, lowerNames[i]) << 32) | i;
+		}
+		Arrays.sort(keys);
+		
+		sortedNames = new String[size];
+		firstPositions = new int[2 * size];
+		for (int i = 0; i < size; i++) {
+			int position = (int)keys[i];
+			sortedNames[i] = lowerNames[position];
+			firstPositions[size + i] = position;
+		}
+		for (int node = size - 1; node > 0; node--) {
+			firstPositions[node] = Math.min(firstPositions[2 * node], firstPositions[2 * node + 1]);
+		}
+	}
+	
+	/**
+	 * Returns the first position of a name starting with the prefix, ignoring case
+	 * @param prefix
+	 * 			The typed prefix
+	 * @return
+	 * 			integer position or -1 if no name matches
+	 */
+	public int findFirst(String prefix) {
+		if (sortedNames == null) {
+			sortNames();
+		}
+		String lowerPrefix = prefix.toLowerCase();
+		int from = lowerBound(lowerPrefix);
+		int to = lowerBound(lowerPrefix + Character.MAX_VALUE);
+		
+		// Smallest position of the sorted range, going up the tree from its ends
+		int first = Integer.MAX_VALUE;
+		for (from += sortedNames.length, to += sortedNames.length; from < to; from >>>= 1, to >>>= 1) {
+			if ((from & 1) == 1) {
+				first = Math.min(first, firstPositions[from++]);
+			}
+			if ((to & 1) == 1) {
+				first = Math.min(first, firstPositions[--to]);
+			}
+		}
+		return first == Integer.MAX_VALUE ? -1 : first;
+	}
+	
+	/**
+	 * Returns the positions of the names matching the pattern: names containing
+	 * it (ignoring case), and camel case matches when the pattern has upper
+	 * case letters
+	 * @param pattern
+	 * 			The filter typed by the user
+	 * @return
+	 * 			Sorted positions
+	 */
+	public int[] find(String pattern) {
+		String lowerPattern = pattern.toLowerCase();
+		boolean camelCase = !pattern.equals(lowerPattern);
+		int[] positions = new int[names.length];
+		int count = 0;
+		for (int i = 0; i < names.length; i++) {
+			if (lowerNames[i].indexOf(lowerPattern) != -1
+					|| (camelCase && SearchPattern.camelCaseMatch(pattern, names[i]))) {
+				positions[count++] = i;
+			}
+		}
+		return Arrays.copyOf(positions, count);
+	}
+	
+	/**
+	 * Returns the first sorted index whose name is not smaller than the key
+	 */
+	private int lowerBound(String key) {
+		int low = 0;
+		int high = sortedNames.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sortedNames[middle].compareTo(key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,309 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aqua.wikiwizard;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IType;
+
+/**
+ * Exports the system objects without a workbench, for the build servers.
+ * Runs as the <code>com.aqua.wikiwizard.export</code> application:
+ * <pre>
+ * eclipse -nosplash -application com.aqua.wikiwizard.export -data &lt;workspace&gt;
+ *     -import &lt;dir&gt; -output &lt;dir&gt; [-threads &lt;n&gt;] [-formats &lt;wiki,markdown,confluence,html&gt;]
+ *     [-incremental] [-site] [-baseType &lt;name&gt; | -all | -walk]
+ *     [-publish &lt;api url&gt; [-user &lt;name&gt; [-passwordFile &lt;file&gt;]] [-connections &lt;n&gt;]]
+ * </pre>
+ * The projects found under the <code>-import</code> directories (may be repeated)
+ * are added to the workspace, then one page per system object is written
+ * to the output directory. With <code>-site</code> the pages are linked together
+ * and an index page is written per package. With <code>-publish</code> the
+ * changed pages are sent to a MediaWiki, <code>-output</code> is then optional.
+ * The subclasses of the base type are exported by default, <code>-all</code>
+ * exports all the source types found by the search engine and <code>-walk</code>
+ * the ones found by walking the projects on <code>-threads</code> threads.
+ * The password of the wiki user is read from the first line of the
+ * <code>-passwordFile</code>, or else from the <code>WIKI_PASSWORD</code>
+ * environment variable, so that it does not show in the process list.
+ */
+public class WikiExportApplication implements IApplication {
+	
+	private static final Integer EXIT_ERROR = Integer.valueOf(1);
+	private static final String PASSWORD_VARIABLE = "WIKI_PASSWORD";
+	
+	private ArrayList<File> importDirectories = new ArrayList<File>();
+	private File outputDirectory;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean incremental = false;
+	private boolean site = false;
+	private URL apiUrl;
+	private String user;
+	private File passwordFile;
+	private int connections = 4;
+	private List<ExportFormat> formats = Collections.singletonList(ExportFormat.WIKI);
+	private boolean allTypes = false;
+	private boolean walkProjects = false;
+	private String baseTypeName = Activator.DEFAULT_BASE_TYPE;
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		if (!parseArguments(args)) {
+			printUsage();
+			return EXIT_ERROR;
+		}
+		String password = null;
+		if (user != null) {
+			try {
+				password = readPassword();
+			} catch (IOException e) {
+				System.err.println("Failed to read the password from " + passwordFile + ": " + e.getMessage());
+				return EXIT_ERROR;
+			}
+			if (password == null) {
+				System.err.println("No password for " + user + ", set " + PASSWORD_VARIABLE + " or use -passwordFile");
+				return EXIT_ERROR;
+			}
+		}
+		
+		ExportMetrics metrics = new ExportMetrics();
+		IProgressMonitor monitor = new NullProgressMonitor();
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		try {
+			for (File directory: importDirectories) {
+				importProjects(workspace, directory, monitor);
+			}
+			
+			List<IJavaElement> elements = discoverTypes(metrics, monitor);
+			
+			WikiExportModel exportModel = new WikiExportModel(new WikiFormater());
+			if (Activator.getPlugin().getPreferenceStore().getBoolean(Activator.PARALLEL_MEMBERS)) {
+				exportModel.setMemberExecutor(Activator.getPlugin().getMemberExecutor());
+			}
+			boolean failed = false;
+			if (outputDirectory != null) {
+				System.out.println("Exporting " + elements.size() + " system objects to " + outputDirectory);
+				BatchExporter exporter = new BatchExporter(exportModel, outputDirectory, threads);
+				exporter.setIncremental(incremental);
+				exporter.setSite(site);
+				exporter.setFormats(formats);
+				IStatus status = exporter.export(elements, metrics, monitor);
+				printStatus(status);
+				failed = status.getSeverity() == IStatus.ERROR;
+			}
+			if (apiUrl != null) {
+				System.out.println("Publishing " + elements.size() + " system objects to " + apiUrl);
+				MediaWikiPublisher publisher = new MediaWikiPublisher(exportModel, apiUrl, connections);
+				publisher.setCredentials(user, password);
+				IStatus status = publisher.publish(elements, metrics, monitor);
+				printStatus(status);
+				failed |= status.getSeverity() == IStatus.ERROR;
+			}
+			
+			System.out.print(metrics.toSummary());
+			return failed ? EXIT_ERROR : EXIT_OK;
+		} catch (CoreException e) {
+			printStatus(e.getStatus());
+			return EXIT_ERROR;
+		} finally {
+			// Keeps the imported projects for the next incremental run.
+			// A failed save does not change the exit code of the export.
+			try {
+				workspace.save(true, monitor);
+			} catch (CoreException e) {
+				System.err.println("Failed to save the workspace");
+				printStatus(e.getStatus());
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+	}
+	
+	private boolean parseArguments(String[] args) {
+		if (args == null) {
+			return false;
+		}
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if ("-import".equals(arg)) {
+					importDirectories.add(new File(args[++i]));
+				} else if ("-output".equals(arg)) {
+					outputDirectory = new File(args[++i]);
+				} else if ("-threads".equals(arg)) {
+					threads = Integer.parseInt(args[++i]);
+				} else if ("-formats".equals(arg)) {
+					formats = ExportFormat.parse(args[++i]);
+				} else if ("-incremental".equals(arg)) {
+					incremental = true;
+				} else if ("-site".equals(arg)) {
+					site = true;
+				} else if ("-publish".equals(arg)) {
+					apiUrl = new URL(args[++i]);
+				} else if ("-user".equals(arg)) {
+					user = args[++i];
+				} else if ("-passwordFile".equals(arg)) {
+					passwordFile = new File(args[++i]);
+				} else if ("-connections".equals(arg)) {
+					connections = Integer.parseInt(args[++i]);
+				} else if ("-baseType".equals(arg)) {
+					baseTypeName = args[++i];
+				} else if ("-all".equals(arg)) {
+					allTypes = true;
+				} else if ("-walk".equals(arg)) {
+					walkProjects = true;
+				} else {
+					System.err.println("Unknown argument " + arg);
+					return false;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return false;
+		} catch (NumberFormatException e) {
+			return false;
+		} catch (MalformedURLException e) {
+			return false;
+		}
+		return outputDirectory != null || apiUrl != null;
+	}
+	
+	private void printUsage() {
+		System.err.println("Usage: -import <dir> -output <dir> [-threads <n>] [-formats <wiki,markdown,confluence,html>]"
+				+ " [-incremental] [-site] [-baseType <name> | -all | -walk]"
+				+ " [-publish <api url> [-user <name> [-passwordFile <file>]] [-connections <n>]]");
+		System.err.println("The password of the user is read from the file or from " + PASSWORD_VARIABLE);
+	}
+	
+	/**
+	 * Returns the password of the wiki user, from the file if given
+	 * or else from the environment. Null if there is none.
+	 */
+	private String readPassword() throws IOException {
+		if (passwordFile == null) {
+			return System.getenv(PASSWORD_VARIABLE);
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(passwordFile), "UTF-8"));
+		try {
+			String line = reader.readLine();
+			return line == null ? null : line.trim();
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Adds and opens the projects found under the directory.
+	 * The projects already in the workspace are only opened.
+	 */
+	private void importProjects(IWorkspace workspace, File directory, IProgressMonitor monitor) throws CoreException {
+		File descriptionFile = new File(directory, IProjectDescription.DESCRIPTION_FILE_NAME);
+		if (descriptionFile.isFile()) {
+			IProjectDescription description = workspace.loadProjectDescription(
+					new Path(descriptionFile.getAbsolutePath()));
+			IProject project = workspace.getRoot().getProject(description.getName());
+			if (!project.exists()) {
+				System.out.println("Importing " + description.getName());
+				project.create(description, monitor);
+			}
+			if (!project.isOpen()) {
+				project.open(monitor);
+			}
+			return;
+		}
+		
+		// Projects are not nested, so only the directories above a project are walked
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File child: children) {
+			if (child.isDirectory()) {
+				importProjects(workspace, child, monitor);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the types to export
+	 */
+	private List<IJavaElement> discoverTypes(ExportMetrics metrics, IProgressMonitor monitor) throws CoreException {
+		final ArrayList<IJavaElement> elements = new ArrayList<IJavaElement>();
+		long start = System.nanoTime();
+		TypeDiscovery discovery;
+		if (walkProjects) {
+			discovery = new ProjectWalkDiscovery(threads);
+		} else if (allTypes) {
+			discovery = new SearchEngineDiscovery();
+		} else {
+			discovery = new HierarchyDiscovery(baseTypeName);
+		}
+		discovery.discover(new TypeDiscoveryListener() {
+			public void typesFound(List<TypeEntry> types) {
+				for (TypeEntry entry: types) {
+					IType type = entry.getType();
+					if (type != null) {
+						elements.add(type);
+					}
+				}
+			}
+			
+			public void discoveryDone(IStatus status) {
+			}
+		}, monitor);
+		metrics.addTime(ExportMetrics.Phase.DISCOVERY, start);
+		metrics.add(ExportMetrics.Counter.TYPES_SCANNED, elements.size());
+		return elements;
+	}
+	
+	private void printStatus(IStatus status) {
+		if (status.isOK()) {
+			System.out.println("Done");
+			return;
+		}
+		System.err.println(status.getMessage());
+		for (IStatus child: status.getChildren()) {
+			System.err.println("  " + child.getMessage());
+			if (child.getException() != null) {
+				System.err.println("    " + child.getException());
+			}
+		}
+	}
+}
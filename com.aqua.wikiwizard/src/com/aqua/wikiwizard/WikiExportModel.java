@@ -17,11 +17,13 @@
 package com.aqua.wikiwizard;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaModel;
 import org.eclipse.jdt.core.IJavaProject;
@@ -36,47 +38,83 @@ import org.eclipse.jdt.core.JavaModelException;
  * @author Guy Arieli, Michael Oziransky
  */
 public class WikiExportModel {
-	private ArrayList<IType> resultsList;
+	
+	/**
+	 * Version of the page layout, to be increased whenever the rendering
+	 * changes so incremental exports write all the pages again
+	 */
+	public static final String FORMAT_VERSION = "4";
+	
+	private ArrayList<TypeEntry> resultsList;
+	
+	// The types matching the filter, when there is one
+	private String filter = "";
+	private ArrayList<TypeEntry> filteredList = new ArrayList<TypeEntry>();
+	
+	// Built on first lookup after the lists changed
+	private TypeSearchIndex searchIndex = null;
+	private TypeSearchIndex filteredIndex = null;
+	
+	// Position of the shown entries by path and simple name, built on first lookup
+	private HashMap<String, Integer> positions = null;
 
-	private IMember selectedMemeber = null;
-	private Formater formater;
+	private ArrayList<IMember> selectedMembers = new ArrayList<IMember>();
+	private AppendableFormater formater;
+	private ExecutorService memberExecutor = null;
 
-	public WikiExportModel(Formater formater) throws Exception {
-		// Get all the types
-		resultsList = getOptionalTypes();
-		// Sort the list
-		sort();
-		this.formater = formater;
+	public WikiExportModel(Formater formater) {
+		// The types are added by a TypeDiscoveryJob as they are found
+		resultsList = new ArrayList<TypeEntry>();
+		this.formater = FormaterAdapter.adapt(formater);
 	}
 	
 	/**
-	 * Get all types in all projects
+	 * Sets the executor used to document the members of each system object
+	 * in parallel. When null (the default) they are documented one at a time.
+	 * @param memberExecutor
+	 * 			A bounded executor, or null
+	 */
+	public void setMemberExecutor(ExecutorService memberExecutor) {
+		this.memberExecutor = memberExecutor;
+	}
+	
+	/**
+	 * Returns the version of the rendered pages, including the formater
 	 * @return
-	 * 		ArrayList<IType>
-	 * @throws Exception
+	 * 			String
+	 */
+	public String getFormatVersion() {
+		return FORMAT_VERSION + "/" + formater.getClass().getName();
+	}
+	
+	/**
+	 * Returns all the java projects in the workspace
+	 * @return
+	 * 		IJavaProject[]
+	 * @throws JavaModelException
 	 */
-	public ArrayList<IType> getOptionalTypes() throws Exception {
+	static IJavaProject[] getJavaProjects() throws JavaModelException {
 		IWorkspace workspace = ResourcesPlugin.getWorkspace();
 
 		// Get the Java model
 		IJavaModel javaModel = JavaCore.create(workspace.getRoot());
 
 		// Get all projects
-		IJavaProject javaProjects[] = javaModel.getJavaProjects();
-		
-		ArrayList<IType> allTypes = new ArrayList<IType>();
-		
-		// Go over all projects and collect all types
-		for (final IJavaProject proj: javaProjects) {
-			collectAllTypesInProject(allTypes, proj);
-		}
-		return allTypes;
+		return javaModel.getJavaProjects();
 	}
 	
-	private void collectAllTypesInProject(ArrayList<IType> allTypes, IParent element) throws JavaModelException {
+	/**
+	 * Collects all the source types under the given element. Stops as soon
+	 * as the monitor (if any) is canceled.
+	 */
+	static void collectAllTypesInProject(ArrayList<IType> allTypes, IParent element, IProgressMonitor monitor) throws JavaModelException {
 		IJavaElement[] elements = element.getChildren();
 		
 		for(IJavaElement je: elements) {
+			if (monitor != null && monitor.isCanceled()) {
+				return;
+			}
+			
 			// Skip the jars
 			if (je.isReadOnly()){
 				continue;
@@ -90,10 +128,57 @@ public class WikiExportModel {
 			
 			// There are more, enter recursion
 			if (je instanceof IParent) {
-				collectAllTypesInProject(allTypes, (IParent)je);
+				collectAllTypesInProject(allTypes, (IParent)je, monitor);
 			}
 		}
 	}
+	
+	/**
+	 * Adds newly discovered types to the list and keeps it sorted.
+	 * Should be called from the UI thread since the list backs the table.
+	 * @param types
+	 * 			The types to add
+	 */
+	public void addTypes(List<TypeEntry> types) {
+		merge(types);
+		searchIndex = null;
+		applyFilter();
+	}
+	
+	/**
+	 * Removes all the types and the selection
+	 */
+	public void clear() {
+		resultsList.clear();
+		selectedMembers.clear();
+		searchIndex = null;
+		applyFilter();
+	}
+	
+	/**
+	 * Shows only the types matching the filter (prefix, substring or camel case)
+	 * @param filter
+	 * 			The filter, empty to show all the types
+	 */
+	public void setFilter(String filter) {
+		this.filter = filter.trim();
+		applyFilter();
+	}
+	
+	private void applyFilter() {
+		filteredList.clear();
+		filteredIndex = null;
+		positions = null;
+		if (filter.length() == 0) {
+			return;
+		}
+		if (searchIndex == null) {
+			searchIndex = new TypeSearchIndex(resultsList);
+		}
+		for (int position: searchIndex.find(filter)) {
+			filteredList.add(resultsList.get(position));
+		}
+	}
 
 	/**
 	 * Sets the selected by the user member
@@ -101,7 +186,38 @@ public class WikiExportModel {
 	 * 			IMember
 	 */
 	public void setSelectedMember(IMember member) {
-		this.selectedMemeber = member;
+		selectedMembers.clear();
+		if (member != null) {
+			selectedMembers.add(member);
+		}
+	}
+	
+	/**
+	 * Sets the members selected by the user
+	 * @param members
+	 * 			List of IMember
+	 */
+	public void setSelectedMembers(List<IMember> members) {
+		selectedMembers.clear();
+		selectedMembers.addAll(members);
+	}
+	
+	/**
+	 * Returns the member selected by the user
+	 * @return
+	 * 			IMember or null if nothing is selected
+	 */
+	public IMember getSelectedMember() {
+		return selectedMembers.isEmpty() ? null : selectedMembers.get(0);
+	}
+	
+	/**
+	 * Returns all the members selected by the user
+	 * @return
+	 * 			List of IMember
+	 */
+	public List<IMember> getSelectedMembers() {
+		return selectedMembers;
 	}
 
 	/**
@@ -111,103 +227,172 @@ public class WikiExportModel {
 	 * @throws Exception
 	 */
 	public String getWikiContent() throws Exception {
-		if (selectedMemeber == null) {
+		IMember selectedMember = getSelectedMember();
+		if (selectedMember == null) {
 			return null;
 		}
-		ObjectsJavaModel javaModel = new ObjectsJavaModel(
-				(IType) selectedMemeber);
-		StringBuffer buf = new StringBuffer();
-
-		// add the header
-		buf.append(formater.h1(javaModel.getShortName() + " System Object"));
-		
-		buf.append(formater.bullet()); 
-		buf.append(formater.formatText("Super class: "));
-		buf.append(formater.link(javaModel.getSuperClassFullName(), javaModel.getSuperClassSimpleName()));
-		buf.append(formater.lineBreak());
-
-		buf.append(formater.h2("Documentation"));
-		buf.append(formater.formatText(javaModel.getSystemObjectJavaDoc()));
-		buf.append(formater.lineBreak());
-		
-		Property[] fields = javaModel.findAllObjectFields();
+		return getWikiContent((IType) selectedMember);
+	}
+	
+	/**
+	 * Returns the wiki content for the given type, measured apart from any run.
+	 * Can be called from several threads at once.
+	 * @param type
+	 * 			The type to export
+	 * @return
+	 * 			String
+	 * @throws Exception
+	 */
+	public String getWikiContent(IType type) throws Exception {
+		StringBuilder buf = new StringBuilder();
+		writeWikiContent(type, buf, new ExportMetrics());
+		return buf.toString();
+	}
+	
+	/**
+	 * Writes the wiki content for the given type section by section,
+	 * without building the whole page first.
+	 * Can be called from several threads at once.
+	 * @param type
+	 * 			The type to export
+	 * @param buf
+	 * 			Where to write the page, a <code>Writer</code> or a buffer
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @throws Exception
+	 */
+	public void writeWikiContent(IType type, Appendable buf, ExportMetrics metrics) throws Exception {
+		SystemObjectDocument document = extractDocument(type, metrics);
 		
-		if (fields != null && fields.length > 0) {
-			buf.append(formater.h2("Public fields"));
-			for (Property property: fields) {
-				buf.append(formater.h3(property.name));
-				
-				buf.append(formater.formatText(property.documentation));
-				buf.append(formater.lineBreak());
-				buf.append(formater.tab());
-				buf.append(formater.bold("Type: "));
-				buf.append(formater.formatText(property.type));
-				buf.append(formater.lineBreak());
-				buf.append(formater.tab());
-				buf.append(formater.bold("Default Value: "));
-				buf.append(formater.formatText(property.defaultValue));
-				buf.append(formater.lineBreak());
-			}
-		}		
-
-		buf.append(formater.h2("Public Methods"));
-		Property[] properties = javaModel.findAllObjectMethods();
-
-		for (Property property : properties) {
-			buf.append(formater.h3(property.name));
+		long start = System.nanoTime();
+		long startBytes = ExportMetrics.allocatedBytes();
+		document.write(formater, buf, metrics);
+		metrics.addTime(ExportMetrics.Phase.OUTPUT, start);
+		metrics.addAllocation(ExportMetrics.Phase.OUTPUT, startBytes);
+	}
+	
+	/**
+	 * Reads everything shown on the page of the type from the java model.
+	 * The document can then be rendered in several formats.
+	 * Can be called from several threads at once.
+	 * @param type
+	 * 			The type to export
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @return
+	 * 			SystemObjectDocument
+	 * @throws Exception
+	 */
+	public SystemObjectDocument extractDocument(IType type, ExportMetrics metrics) throws Exception {
+		return new SystemObjectDocument(extractSnapshot(type, metrics));
+	}
+	
+	/**
+	 * Reads a detached copy of the type and of its documented members.
+	 * Can be called from several threads at once.
+	 * @param type
+	 * 			The type to export
+	 * @param metrics
+	 * 			The metrics of the run
+	 * @return
+	 * 			SystemObjectSnapshot
+	 * @throws Exception
+	 */
+	public SystemObjectSnapshot extractSnapshot(IType type, ExportMetrics metrics) throws Exception {
+		long start = System.nanoTime();
+		long startBytes = ExportMetrics.allocatedBytes();
+		try {
+			ObjectsJavaModel javaModel = new ObjectsJavaModel(type, metrics);
+			javaModel.setExecutor(memberExecutor);
 			
-			buf.append(formater.formatText(property.documentation));
-			buf.append(formater.lineBreak());
+			return javaModel.createSnapshot();
+		} finally {
+			// Includes the time of the nested phases (hierarchy, javadoc and field values)
+			metrics.addTime(ExportMetrics.Phase.EXTRACTION, start);
+			metrics.addAllocation(ExportMetrics.Phase.EXTRACTION, startBytes);
+			metrics.increment(ExportMetrics.Counter.TYPES_EXPORTED);
 		}
-
-		return buf.toString();
 	}
 
 	/**
-	 * Sorts the list alphabetically 
+	 * Sorts the new types alphabetically and merges them into the sorted list,
+	 * so the types found so far are not sorted again for every batch
 	 */
-	private void sort() {
-		Collections.sort(resultsList, new Comparator<IType>() {
-
-            public int compare(IType t1, IType t2) {
-            	IMember member1 = (IMember)t1;
-            	IMember member2 = (IMember)t2;
-            	
-                String name1 = member1.getElementName();
-                String name2 = member2.getElementName();
-                
-                return name1.compareTo(name2);
-            }});
+	private void merge(List<TypeEntry> types) {
+		ArrayList<TypeEntry> batch = new ArrayList<TypeEntry>(types);
+		TypeEntry.sortByName(batch);
+		
+		// Merged from the end, in place
+		int i = resultsList.size() - 1;
+		int j = batch.size() - 1;
+		resultsList.addAll(batch);
+		for (int k = resultsList.size() - 1; j >= 0; k--) {
+			if (i >= 0 && TypeEntry.NAME_ORDER.compare(resultsList.get(i), batch.get(j)) > 0) {
+				resultsList.set(k, resultsList.get(i--));
+			} else {
+				resultsList.set(k, batch.get(j--));
+			}
+		}
 	}
 	
 	/**
 	 * Returns the matching results
 	 * 
-	 * @return ArrayList containing strings
+	 * @return ArrayList containing the types matching the filter
 	 */
-	public ArrayList<IType> getObjects() {
-		return resultsList;
+	public ArrayList<TypeEntry> getObjects() {
+		return filter.length() == 0 ? resultsList : filteredList;
 	}
 	
 	/**
-	 * Returns first index of the item that starts with the given letter.
-	 * If there was no match found, return -1.
-	 * @param letter
-	 * 			String letter for the match
+	 * Returns the index of the entry of the given member in the shown list.
+	 * The positions are mapped once per change of the list.
+	 * @param member
+	 * 			The member to look for
+	 * @return
+	 * 			integer index in <code>getObjects()</code> or -1 if it is not shown
+	 */
+	public int indexOf(IMember member) {
+		if (!(member instanceof IType)) {
+			return -1;
+		}
+		if (positions == null) {
+			ArrayList<TypeEntry> objects = getObjects();
+			positions = new HashMap<String, Integer>(objects.size() * 2);
+			for (int i = objects.size() - 1; i >= 0; i--) {
+				TypeEntry entry = objects.get(i);
+				positions.put(getPositionKey(entry.getPath(), entry.getSimpleName()), Integer.valueOf(i));
+			}
+		}
+		Integer position = positions.get(getPositionKey(member.getPath().toString(), member.getElementName()));
+		return position == null ? -1 : position.intValue();
+	}
+	
+	/**
+	 * Returns the key of an entry, like <code>TypeEntry.represents</code> compares it
+	 */
+	private static String getPositionKey(String path, String simpleName) {
+		return path + '#' + simpleName;
+	}
+	
+	/**
+	 * Returns first index of the item whose name starts with the given prefix,
+	 * ignoring case. If there was no match found, return -1.
+	 * @param prefix
+	 * 			String typed by the user
 	 * @return
 	 * 			integer index or -1 in case of failure
 	 */
-	public int getObjectByLetter(String letter) {
-		int retVal = -1;
-		
-		for (int i = 0; i < resultsList.size(); i++) {
-			IMember member = (IMember)resultsList.get(i);
-			if (member.getElementName().toLowerCase().startsWith(letter)) {
-				retVal = i;
-				break;
+	public int getObjectByLetter(String prefix) {
+		if (filter.length() == 0) {
+			if (searchIndex == null) {
+				searchIndex = new TypeSearchIndex(resultsList);
 			}
+			return searchIndex.findFirst(prefix);
 		}
-		
-		return retVal;
+		if (filteredIndex == null) {
+			filteredIndex = new TypeSearchIndex(filteredList);
+		}
+		return filteredIndex.findFirst(prefix);
 	}
 }
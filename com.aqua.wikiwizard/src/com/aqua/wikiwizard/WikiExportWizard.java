@@ -19,7 +19,21 @@ package com.aqua.wikiwizard;
 import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.wizard.Wizard;
 import org.eclipse.ui.INewWizard;
@@ -28,6 +42,7 @@ import org.eclipse.ui.IWorkbenchWizard;
 import org.eclipse.ui.console.ConsolePlugin;
 import org.eclipse.ui.console.IConsole;
 import org.eclipse.ui.console.IOConsole;
+import org.eclipse.ui.console.IOConsoleOutputStream;
 
 /**
  * Wizard class
@@ -39,15 +54,22 @@ public class WikiExportWizard extends Wizard implements INewWizard
 	
 	// Wizard pages
 	SystemObjectPage objectListPage;
+	ExportDestinationPage destinationPage;
 	
 	// Workbench selection when the wizard was started
 	protected IStructuredSelection selection;
 	
+	// Java projects, packages and types of the workbench selection
+	protected List<IJavaElement> workbenchElements;
+	
 	// The workbench instance
 	protected IWorkbench workbench;
 	
 	// The model
 	protected WikiExportModel exportModel;
+	
+	// Fills the model in the background
+	protected TypeDiscoveryJob discoveryJob;
 
 	/**
 	 * Constructor for WikiExportWizard
@@ -60,6 +82,34 @@ public class WikiExportWizard extends Wizard implements INewWizard
 	{
 		objectListPage = new SystemObjectPage(workbench, selection);
 		addPage(objectListPage);
+		destinationPage = new ExportDestinationPage(!workbenchElements.isEmpty());
+		addPage(destinationPage);
+		
+		// The workbench selection can be exported without picking objects
+		objectListPage.setPageComplete(!workbenchElements.isEmpty());
+		
+		startDiscovery();
+	}
+	
+	/**
+	 * Starts (or restarts) filling the model with the types found.
+	 * Don't block the dialog, the page is filled as the types are found.
+	 */
+	void startDiscovery() {
+		cancelDiscovery();
+		exportModel.clear();
+		
+		TypeDiscovery discovery;
+		IPreferenceStore store = Activator.getPlugin().getPreferenceStore();
+		if (store.getBoolean(Activator.ONLY_SUBCLASSES)) {
+			discovery = new HierarchyDiscovery(store.getString(Activator.BASE_TYPE));
+		} else if (store.getBoolean(Activator.WALK_PROJECTS)) {
+			discovery = new ProjectWalkDiscovery(Runtime.getRuntime().availableProcessors());
+		} else {
+			discovery = Activator.getPlugin().getTypeCatalog();
+		}
+		discoveryJob = new TypeDiscoveryJob(discovery, objectListPage);
+		discoveryJob.schedule();
 	}
 
 	/**
@@ -69,20 +119,78 @@ public class WikiExportWizard extends Wizard implements INewWizard
 	{
 		this.workbench = workbench;
 		this.selection = selection;
+		this.workbenchElements = getJavaElements(selection);
 		
-		try {
-			exportModel = new WikiExportModel(new WikiFormater());
-		} catch (Exception e) {}
+		exportModel = new WikiExportModel(new WikiFormater());
+		if (Activator.getPlugin().getPreferenceStore().getBoolean(Activator.PARALLEL_MEMBERS)) {
+			exportModel.setMemberExecutor(Activator.getPlugin().getMemberExecutor());
+		}
+	}
+	
+	/**
+	 * Returns the java projects, packages, compilation units and types of the selection
+	 */
+	private static List<IJavaElement> getJavaElements(IStructuredSelection selection) {
+		ArrayList<IJavaElement> elements = new ArrayList<IJavaElement>();
+		if (selection == null) {
+			return elements;
+		}
+		for (Object object: selection.toArray()) {
+			IJavaElement element = null;
+			if (object instanceof IJavaElement) {
+				element = (IJavaElement)object;
+			} else if (object instanceof IResource) {
+				element = JavaCore.create((IResource)object);
+			} else if (object instanceof IAdaptable) {
+				element = ((IAdaptable)object).getAdapter(IJavaElement.class);
+			}
+			if (element == null) {
+				continue;
+			}
+			switch (element.getElementType()) {
+			case IJavaElement.JAVA_PROJECT:
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			case IJavaElement.PACKAGE_FRAGMENT:
+			case IJavaElement.COMPILATION_UNIT:
+			case IJavaElement.TYPE:
+				elements.add(element);
+				break;
+			}
+		}
+		return elements;
 	}
 
 	public boolean performFinish() 
 	{
-		IOConsole console = new IOConsole("Wiki",null);
-		ConsolePlugin.getDefault().getConsoleManager().addConsoles(new IConsole[]{console});
-		console.activate();
+		cancelDiscovery();
+		
+		if (destinationPage.isDirectoryExport() || destinationPage.isPublish()) {
+			destinationPage.saveSettings();
+			if (destinationPage.isDirectoryExport()) {
+				exportToDirectory();
+			}
+			if (destinationPage.isPublish()) {
+				publishToWiki();
+			}
+			return true;
+		}
+		
+		IOConsole console = openConsole();
 		try {
-			String content = exportModel.getWikiContent();
-			console.newOutputStream().write(content);
+			List<IMember> members = exportModel.getSelectedMembers();
+			if (members.isEmpty()) {
+				members = new ArrayList<IMember>(BatchExporter.collectTypes(workbenchElements, new NullProgressMonitor()));
+			}
+			// Render once, the same string goes to the console and the clipboard
+			ExportMetrics metrics = new ExportMetrics();
+			StringBuilder buf = new StringBuilder();
+			for (IMember member: members) {
+				exportModel.writeWikiContent((IType)member, buf, metrics);
+			}
+			String content = buf.toString();
+			IOConsoleOutputStream out = console.newOutputStream();
+			out.write(content);
+			out.write("\n" + metrics.toSummary());
 			Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
 		    clipboard.setContents( new StringSelection( content ), null );
 
@@ -91,6 +199,90 @@ public class WikiExportWizard extends Wizard implements INewWizard
 		return true;
 	}
 	
+	/**
+	 * Writes the pages of the selected objects in the background
+	 */
+	private void exportToDirectory() {
+		BatchExporter exporter = new BatchExporter(exportModel,
+				destinationPage.getDirectory(), destinationPage.getThreads());
+		exporter.setIncremental(destinationPage.isIncremental());
+		exporter.setSite(destinationPage.isSite());
+		exporter.setFormats(destinationPage.getFormats());
+		final BatchExportJob job = new BatchExportJob(exporter, getExportElements());
+		job.setUser(true);
+		job.addJobChangeListener(new JobChangeAdapter() {
+			public void done(IJobChangeEvent event) {
+				try {
+					openConsole().newOutputStream().write(job.getMetrics().toSummary());
+				} catch (IOException e) {
+					// The summary is also in the report file
+				}
+			}
+		});
+		job.schedule();
+	}
+	
+	/**
+	 * Publishes the pages of the selected objects in the background
+	 */
+	private void publishToWiki() {
+		MediaWikiPublisher publisher = new MediaWikiPublisher(exportModel,
+				destinationPage.getApiUrl(), destinationPage.getConnections());
+		publisher.setCredentials(destinationPage.getUser(), destinationPage.getPassword());
+		final MediaWikiPublishJob job = new MediaWikiPublishJob(publisher, getExportElements());
+		job.setUser(true);
+		job.addJobChangeListener(new JobChangeAdapter() {
+			public void done(IJobChangeEvent event) {
+				try {
+					openConsole().newOutputStream().write(job.getMetrics().toSummary());
+				} catch (IOException e) {
+					// Only the summary is lost
+				}
+			}
+		});
+		job.schedule();
+	}
+	
+	/**
+	 * Returns the selected objects, with the workbench selection if asked
+	 */
+	private List<IJavaElement> getExportElements() {
+		ArrayList<IJavaElement> elements = new ArrayList<IJavaElement>();
+		for (IMember member: exportModel.getSelectedMembers()) {
+			elements.add(member);
+		}
+		if (destinationPage.isWorkbenchSelectionExport()) {
+			elements.addAll(workbenchElements);
+		}
+		return elements;
+	}
+	
+	/**
+	 * Adds a new Wiki console and shows it
+	 */
+	private static IOConsole openConsole() {
+		IOConsole console = new IOConsole("Wiki",null);
+		ConsolePlugin.getDefault().getConsoleManager().addConsoles(new IConsole[]{console});
+		console.activate();
+		return console;
+	}
+	
+	public boolean performCancel() {
+		cancelDiscovery();
+		return super.performCancel();
+	}
+	
+	public void dispose() {
+		cancelDiscovery();
+		super.dispose();
+	}
+	
+	private void cancelDiscovery() {
+		if (discoveryJob != null) {
+			discoveryJob.cancel();
+		}
+	}
+	
 	public WikiExportModel getModel() {
 		return exportModel;
 	}
@@ -16,58 +16,78 @@
 
 package com.aqua.wikiwizard;
 
-public class WikiFormater implements Formater {
+import java.io.IOException;
+
+/**
+ * MediaWiki formater, the string methods are rendered by <code>AbstractFormater</code>
+ */
+public class WikiFormater extends AbstractFormater {
 
 	@Override
-	public String formatText(String text) {
-		if (text == null) {
-			return "N/A";
-		}
-		return text;
+	public void formatText(Appendable out, String text) throws IOException {
+		out.append(text == null ? "N/A" : text);
 	}
 
 	@Override
-	public String h1(String header) {
-		return "= " + formatText(header) + " =\n" ;
+	public void code(Appendable out, String text) throws IOException {
+		// Not parsed as markup, the entities are still shown as characters
+		out.append("<code><nowiki>");
+		escape(out, text == null ? "N/A" : text);
+		out.append("</nowiki></code>");
 	}
 
 	@Override
-	public String h2(String header) {
-		return "== " + formatText(header) + " ==\n" ;
+	public void h1(Appendable out, String header) throws IOException {
+		out.append("= ");
+		formatText(out, header);
+		out.append(" =\n");
 	}
 
 	@Override
-	public String h3(String header) {
-		return "=== " + formatText(header) + " ===\n" ;
+	public void h2(Appendable out, String header) throws IOException {
+		out.append("== ");
+		formatText(out, header);
+		out.append(" ==\n");
 	}
 
 	@Override
-	public String h4(String header) {
-		return "==== " + formatText(header) + " ====\n" ;
+	public void h3(Appendable out, String header) throws IOException {
+		out.append("=== ");
+		formatText(out, header);
+		out.append(" ===\n");
 	}
 
 	@Override
-	public String lineBreak() {
-		return "<br />\n";
+	public void h4(Appendable out, String header) throws IOException {
+		out.append("==== ");
+		formatText(out, header);
+		out.append(" ====\n");
 	}
 
 	@Override
-	public String bold(String text) {
-		return "'''" + formatText(text) + "'''";
+	public void lineBreak(Appendable out) throws IOException {
+		out.append("<br />\n");
 	}
 
 	@Override
-	public String tab() {
-		return ": ";
+	public void bold(Appendable out, String text) throws IOException {
+		out.append("'''");
+		formatText(out, text);
+		out.append("'''");
 	}
-	
+
 	@Override
-	public String bullet(){
-		return "* ";
+	public void tab(Appendable out) throws IOException {
+		out.append(": ");
 	}
-	
+
 	@Override
-    public String link(String link, String title) {
-        return " [[" + link + " | " + title  + "]]" ;
-    }
+	public void bullet(Appendable out) throws IOException {
+		out.append("* ");
+	}
+
+	@Override
+	public void link(Appendable out, String link, String title) throws IOException {
+		out.append(" [[").append(link).append(" | ").append(title).append("]]");
+	}
 }
@@ -0,0 +1,368 @@
+/**
+ * Copyright 2008, AQUA Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aqua.wikiwizard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns the HTML javadoc into well formed XHTML in a single pass, for the
+ * Confluence storage format. The known HTML elements are kept, lower cased,
+ * with quoted attributes and the end tags that HTML lets out. Empty elements
+ * are closed, unmatched end tags and comments are dropped, and everything
+ * else, like the <code>&lt;T&gt;</code> of a generic type, is escaped as text.
+ * The named entities are written as character references.
+ */
+public class XhtmlSanitizer {
+	
+	private static final Set<String> ELEMENTS = setOf(
+			"a", "abbr", "b", "big", "blockquote", "br", "caption", "cite", "code", "dd", "del", "dfn",
+			"div", "dl", "dt", "em", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "i", "img", "ins", "kbd",
+			"li", "ol", "p", "pre", "q", "s", "samp", "small", "span", "strike", "strong", "sub", "sup",
+			"table", "tbody", "td", "tfoot", "th", "thead", "tr", "tt", "u", "ul", "var");
+	
+	// Elements without content
+	private static final Set<String> EMPTY_ELEMENTS = setOf("br", "hr", "img");
+	
+	// Elements starting a block, which end an open paragraph
+	private static final Set<String> BLOCK_ELEMENTS = setOf("blockquote", "div", "dl", "h1", "h2", "h3",
+			"h4", "h5", "h6", "hr", "ol", "p", "pre", "table", "ul");
+	
+	// The elements an element ends and the ones out of which it does not end them
+	private static final Set<String> LIST_ITEMS = setOf("li");
+	private static final Set<String> LISTS = setOf("ol", "ul");
+	private static final Set<String> DEFINITIONS = setOf("dd", "dt");
+	private static final Set<String> DEFINITION_LISTS = setOf("dl");
+	private static final Set<String> ROWS = setOf("tr");
+	private static final Set<String> ROW_GROUPS = setOf("table", "tbody", "tfoot", "thead");
+	private static final Set<String> CELLS = setOf("td", "th");
+	private static final Set<String> CELL_GROUPS = setOf("table", "tr");
+	private static final Set<String> TABLE_SECTIONS = setOf("tbody", "tfoot", "thead");
+	private static final Set<String> TABLES = setOf("table");
+	private static final Set<String> PARAGRAPHS = setOf("p");
+	private static final Set<String> PARAGRAPH_GROUPS = setOf("blockquote", "dd", "div", "dt", "li", "td", "th");
+	
+	private static final Set<String> XML_ENTITIES = setOf("amp", "apos", "gt", "lt", "quot");
+	
+	// Code points of the named entities found in javadoc
+	private static final HashMap<String, Integer> ENTITIES = new HashMap<String, Integer>();
+	static {
+		String[] names = {"nbsp", "copy", "reg", "trade", "mdash", "ndash", "hellip", "laquo", "raquo",
+				"bull", "middot", "lsquo", "rsquo", "ldquo", "rdquo", "times", "para", "sect", "deg",
+				"plusmn", "larr", "rarr", "le", "ge", "ne"};
+		int[] codes = {160, 169, 174, 8482, 8212, 8211, 8230, 171, 187,
+				8226, 183, 8216, 8217, 8220, 8221, 215, 182, 167, 176,
+				177, 8592, 8594, 8804, 8805, 8800};
+		for (int i = 0; i < names.length; i++) {
+			ENTITIES.put(names[i], Integer.valueOf(codes[i]));
+		}
+	}
+	
+	private static Set<String> setOf(String... names) {
+		return new HashSet<String>(Arrays.asList(names));
+	}
+	
+	/**
+	 * Returns the javadoc as XHTML
+	 * @param html
+	 * 			The HTML javadoc
+	 * @return
+	 * 			String with all the elements it opens closed
+	 */
+	public static String sanitize(String html) {
+		StringBuilder out = new StringBuilder(html.length() + 16);
+		ArrayList<String> open = new ArrayList<String>();
+		int length = html.length();
+		int i = 0;
+		while (i < length) {
+			char c = html.charAt(i);
+			if (c == '<') {
+				if (html.startsWith("<!--", i)) {
+					int end = html.indexOf("-->", i + 4);
+					i = end == -1 ? length : end + 3;
+					continue;
+				}
+				int end = tag(html, i, out, open);
+				if (end != -1) {
+					i = end;
+					continue;
+				}
+			}
+			i = text(html, i, out, false);
+		}
+		close(out, open, 0);
+		return out.toString();
+	}
+	
+	/**
+	 * Writes the character at the index as text
+	 * @return
+	 * 			The index of the next character
+	 */
+	private static int text(String html, int i, StringBuilder out, boolean attribute) {
+		char c = html.charAt(i);
+		switch (c) {
+		case '&':
+			int end = entity(html, i, out);
+			if (end != -1) {
+				return end;
+			}
+			out.append("&amp;");
+			break;
+		case '<':
+			out.append("&lt;");
+			break;
+		case '>':
+			out.append("&gt;");
+			break;
+		case '"':
+			out.append(attribute ? "&quot;" : "\"");
+			break;
+		default:
+			// The other control characters are not allowed in XML
+			if (c >= ' ' || c == '\n' || c == '\t' || c == '\r') {
+				out.append(c);
+			}
+		}
+		return i + 1;
+	}
+	
+	/**
+	 * Writes the entity at the index, if there is a known one
+	 * @return
+	 * 			The index after the entity or -1 if there is none
+	 */
+	private static int entity(String html, int start, StringBuilder out) {
+		int end = html.indexOf(';', start);
+		if (end == -1 || end - start > 12 || end == start + 1) {
+			return -1;
+		}
+		String name = html.substring(start + 1, end);
+		if (name.charAt(0) == '#') {
+			boolean hex = name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X');
+			int radix = hex ? 16 : 10;
+			int code = 0;
+			for (int i = hex ? 2 : 1; i < name.length(); i++) {
+				int digit = Character.digit(name.charAt(i), radix);
+				if (digit == -1) {
+					return -1;
+				}
+				code = code * radix + digit;
+				if (code > Character.MAX_CODE_POINT) {
+					return -1;
+				}
+			}
+			if (name.length() == (hex ? 2 : 1) || !isXmlChar(code)) {
+				return -1;
+			}
+			out.append('&').append(name).append(';');
+		} else if (XML_ENTITIES.contains(name)) {
+			out.append('&').append(name).append(';');
+		} else if (ENTITIES.containsKey(name)) {
+			out.append("&#").append(ENTITIES.get(name).intValue()).append(';');
+		} else {
+			return -1;
+		}
+		return end + 1;
+	}
+	
+	/**
+	 * Writes the tag at the index if it is one of a known element
+	 * @return
+	 * 			The index after the tag or -1 if it is not written
+	 */
+	private static int tag(String html, int start, StringBuilder out, List<String> open) {
+		int length = html.length();
+		int i = start + 1;
+		boolean endTag = i < length && html.charAt(i) == '/';
+		if (endTag) {
+			i++;
+		}
+		int nameStart = i;
+		while (i < length && Character.isLetterOrDigit(html.charAt(i))) {
+			i++;
+		}
+		String name = html.substring(nameStart, i).toLowerCase(Locale.ENGLISH);
+		if (!ELEMENTS.contains(name) || i == length
+				|| (html.charAt(i) != '>' && html.charAt(i) != '/' && !Character.isWhitespace(html.charAt(i)))) {
+			return -1;
+		}
+		
+		// The attributes, the values may contain '>'
+		StringBuilder attributes = new StringBuilder();
+		HashSet<String> attributeNames = new HashSet<String>();
+		boolean closed = false;
+		while (true) {
+			while (i < length && Character.isWhitespace(html.charAt(i))) {
+				i++;
+			}
+			if (i == length) {
+				return -1;
+			}
+			char c = html.charAt(i);
+			if (c == '>') {
+				i++;
+				break;
+			}
+			if (c == '/') {
+				closed = true;
+				i++;
+				continue;
+			}
+			int attributeStart = i;
+			while (i < length && "=>/".indexOf(html.charAt(i)) == -1 && !Character.isWhitespace(html.charAt(i))) {
+				i++;
+			}
+			if (i == attributeStart) {
+				i++;
+				continue;
+			}
+			String attribute = html.substring(attributeStart, i).toLowerCase(Locale.ENGLISH);
+			while (i < length && Character.isWhitespace(html.charAt(i))) {
+				i++;
+			}
+			// A value is required in XHTML, like checked="checked"
+			int valueStart = -1;
+			int valueEnd = -1;
+			if (i < length && html.charAt(i) == '=') {
+				i++;
+				while (i < length && Character.isWhitespace(html.charAt(i))) {
+					i++;
+				}
+				if (i < length && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+					valueStart = i + 1;
+					valueEnd = html.indexOf(html.charAt(i), valueStart);
+					if (valueEnd == -1) {
+						return -1;
+					}
+					i = valueEnd + 1;
+				} else {
+					valueStart = i;
+					while (i < length && html.charAt(i) != '>' && !Character.isWhitespace(html.charAt(i))) {
+						i++;
+					}
+					valueEnd = i;
+				}
+			}
+			// The event handlers are dropped with the invalid names
+			if (isName(attribute) && !attribute.startsWith("on") && attributeNames.add(attribute)) {
+				attributes.append(' ').append(attribute).append("=\"");
+				if (valueStart == -1) {
+					attributes.append(attribute);
+				} else {
+					for (int j = valueStart; j < valueEnd; ) {
+						j = text(html, j, attributes, true);
+					}
+				}
+				attributes.append('"');
+			}
+		}
+		
+		if (endTag) {
+			// An end tag closes the elements left open inside, an unmatched one is dropped
+			int index = open.lastIndexOf(name);
+			if (index != -1) {
+				close(out, open, index);
+			}
+			return i;
+		}
+		closeImplied(out, open, name);
+		out.append('<').append(name).append(attributes);
+		if (closed || EMPTY_ELEMENTS.contains(name)) {
+			out.append(" />");
+		} else {
+			out.append('>');
+			open.add(name);
+		}
+		return i;
+	}
+	
+	/**
+	 * Closes the elements that HTML ends when the given one starts,
+	 * like an open list item when the next one starts
+	 */
+	private static void closeImplied(StringBuilder out, List<String> open, String name) {
+		if (LIST_ITEMS.contains(name)) {
+			closeWithin(out, open, LIST_ITEMS, LISTS);
+		} else if (DEFINITIONS.contains(name)) {
+			closeWithin(out, open, DEFINITIONS, DEFINITION_LISTS);
+		} else if (ROWS.contains(name)) {
+			closeWithin(out, open, ROWS, ROW_GROUPS);
+		} else if (CELLS.contains(name)) {
+			closeWithin(out, open, CELLS, CELL_GROUPS);
+		} else if (TABLE_SECTIONS.contains(name)) {
+			closeWithin(out, open, TABLE_SECTIONS, TABLES);
+		}
+		if (BLOCK_ELEMENTS.contains(name)) {
+			closeWithin(out, open, PARAGRAPHS, PARAGRAPH_GROUPS);
+		}
+	}
+	
+	/**
+	 * Closes the innermost open element among the ended ones, with the
+	 * elements inside it, unless a scope element is found first
+	 */
+	private static void closeWithin(StringBuilder out, List<String> open, Set<String> ended, Set<String> scope) {
+		for (int i = open.size() - 1; i >= 0; i--) {
+			String element = open.get(i);
+			if (ended.contains(element)) {
+				close(out, open, i);
+				return;
+			}
+			if (scope.contains(element)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Closes the open elements from the innermost down to the given depth
+	 */
+	private static void close(StringBuilder out, List<String> open, int depth) {
+		while (open.size() > depth) {
+			out.append("</").append(open.remove(open.size() - 1)).append('>');
+		}
+	}
+	
+	/**
+	 * Returns true if the code point is allowed in an XML document
+	 */
+	private static boolean isXmlChar(int code) {
+		return code == '\t' || code == '\n' || code == '\r' || (code >= ' ' && code < 0xD800)
+				|| (code > 0xDFFF && code < 0xFFFE) || (code >= 0x10000 && code <= Character.MAX_CODE_POINT);
+	}
+	
+	private static boolean isName(String name) {
+		if (name.length() == 0 || !Character.isLetter(name.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < name.length(); i++) {
+			char c = name.charAt(i);
+			// No prefix, it would need a namespace
+			if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+				return false;
+			}
+		}
+		return true;
+	}
+}